@@ -0,0 +1,135 @@
+package com.nbenliogludev.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files ({@code -rf json}) and exits with status 1 when any primary score or
+ * allocation rate regressed by more than the threshold.
+ * <p>
+ * A change only counts as a regression when it is also larger than the two runs' {@code scoreError} (99.9%
+ * confidence half-widths) combined, so noise within the measured error never fails the check. Scores whose
+ * baseline error alone exceeds the threshold are marked {@code NOISY}: they cannot detect a regression of that
+ * size, and the baseline should be recorded with more iterations or forks.
+ * <p>
+ * Usage: {@code BaselineComparator <baseline.json> <current.json> [thresholdPercent]}
+ *
+ * @author nbenliogludev
+ */
+public final class BaselineComparator {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10.0;
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    private BaselineComparator() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparator <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+
+        Map<String, Score> baseline = load(args[0]);
+        Map<String, Score> current = load(args[1]);
+
+        int regressions = 0;
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-80s %14.3f %-8s (new)%n", entry.getKey(), entry.getValue().value, entry.getValue().unit);
+                continue;
+            }
+            Score after = entry.getValue();
+            double change = (after.value - before.value) / before.value * 100.0;
+            // throughput gets worse when it drops, time and bytes get worse when they grow
+            double worsening = after.higherIsBetter ? -change : change;
+            boolean significant = Math.abs(after.value - before.value) > before.error + after.error;
+            boolean regressed = before.value > 0 && worsening > threshold && significant;
+            boolean noisy = before.value > 0 && before.error / before.value * 100.0 > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-80s %14.3f -> %14.3f %-8s %+7.1f%% (+/-%.1f%%)%s%s%n",
+                    entry.getKey(), before.value, after.value, after.unit, change,
+                    before.value > 0 ? before.error / before.value * 100.0 : 0.0,
+                    regressed ? "  REGRESSION" : "", noisy ? "  NOISY" : "");
+        }
+
+        if (regressions > 0) {
+            System.out.println(regressions + " regression(s) above " + threshold + "%");
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> load(String file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<String, Score>();
+        try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            JsonArray runs = JsonParser.parseReader(reader).getAsJsonArray();
+            for (JsonElement element : runs) {
+                JsonObject run = element.getAsJsonObject();
+                String name = run.get("benchmark").getAsString().replace("com.nbenliogludev.benchmark.", "")
+                        + params(run) + " [" + run.get("mode").getAsString() + ", " + run.get("threads").getAsInt() + "t]";
+
+                JsonObject primary = run.getAsJsonObject("primaryMetric");
+                scores.put(name, new Score(primary.get("score").getAsDouble(), error(primary),
+                        primary.get("scoreUnit").getAsString(), "thrpt".equals(run.get("mode").getAsString())));
+
+                JsonObject secondary = run.getAsJsonObject("secondaryMetrics");
+                if (secondary != null && secondary.has(ALLOCATION_METRIC)) {
+                    JsonObject allocation = secondary.getAsJsonObject(ALLOCATION_METRIC);
+                    scores.put(name + " " + ALLOCATION_METRIC, new Score(allocation.get("score").getAsDouble(),
+                            error(allocation), allocation.get("scoreUnit").getAsString(), false));
+                }
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * JMH writes {@code NaN} when a run had too few iterations to estimate the error.
+     */
+    private static double error(JsonObject metric) {
+        JsonElement error = metric.get("scoreError");
+        if (error == null || !error.isJsonPrimitive() || !error.getAsJsonPrimitive().isNumber()) {
+            return 0.0;
+        }
+        double value = error.getAsDouble();
+        return Double.isNaN(value) ? 0.0 : value;
+    }
+
+    private static String params(JsonObject run) {
+        if (!run.has("params")) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, JsonElement> param : run.getAsJsonObject("params").entrySet()) {
+            sb.append(sb.length() == 0 ? "{" : ",").append(param.getKey()).append('=').append(param.getValue().getAsString());
+        }
+        return sb.append('}').toString();
+    }
+
+    private static final class Score {
+        private final double value;
+        private final double error;
+        private final String unit;
+        private final boolean higherIsBetter;
+
+        private Score(double value, double error, String unit, boolean higherIsBetter) {
+            this.value = value;
+            this.error = error;
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.nbenliogludev.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loopback HTTP server that answers {@code /weather?q=<name>} with the recorded payload of that name.
+ * The second constructor adds a fixed upstream latency and answers any other name with the London payload.
+ *
+ * @author nbenliogludev
+ */
+final class BenchmarkStubServer implements AutoCloseable {
+
+    static {
+        // without it the JDK server's Nagle + delayed ACK adds ~40 ms to keep-alive responses
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final long delayMillis;
+    private final Map<String, byte[]> payloads = new HashMap<String, byte[]>();
+
+    BenchmarkStubServer() throws IOException {
+        this(Executors.newFixedThreadPool(8), 0L);
+    }
+
+    BenchmarkStubServer(ExecutorService executor, long delayMillis) throws IOException {
+        this.executor = executor;
+        this.delayMillis = delayMillis;
+        for (String name : Payloads.NAMES) {
+            payloads.put(name, Payloads.load(name));
+        }
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4096);
+        server.createContext("/data/2.5/weather", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] payload = payloads.get(queryParam(exchange.getRequestURI().getQuery(), "q"));
+                if (delayMillis > 0) {
+                    if (payload == null) {
+                        payload = payloads.get("london");
+                    }
+                    sleep(delayMillis);
+                }
+                reply(exchange, payload);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/data/2.5";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static String queryParam(String query, String name) {
+        for (String pair : query.split("&")) {
+            if (pair.startsWith(name + "=")) {
+                return pair.substring(name.length() + 1).toLowerCase(Locale.ROOT);
+            }
+        }
+        return null;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void reply(HttpExchange exchange, byte[] body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.nbenliogludev.benchmark;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Runs {@link WeatherCacheBenchmark} with 1 to 64 threads and prints one line per configuration.
+ *
+ * @author nbenliogludev
+ */
+public final class CacheContentionRunner {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    private CacheContentionRunner() {}
+
+    public static void main(String[] args) throws RunnerException {
+        List<String> lines = new ArrayList<String>();
+
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(WeatherCacheBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+
+            Collection<RunResult> results = new Runner(options).run();
+            for (RunResult result : results) {
+                lines.add(String.format("%-10s %-13s %3d threads %,16.1f ops/us",
+                        result.getParams().getBenchmark().replaceAll(".*\\.", ""),
+                        result.getParams().getParam("cache"),
+                        threads,
+                        result.getPrimaryResult().getScore()));
+            }
+        }
+
+        for (String line : lines) {
+            System.out.println(line);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.nbenliogludev.benchmark;
+
+import com.nbenliogludev.internal.WeatherCache;
+import com.nbenliogludev.internal.WeatherResponseParser;
+import com.nbenliogludev.metrics.NoopWeatherMetrics;
+import com.nbenliogludev.model.WeatherResponse;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Measures the retained heap of a full {@link WeatherCache} with object and compact entries.
+ * <p>
+ * Every entry is parsed from its own payload, as it would be after a real fetch, so strings are
+ * not accidentally shared between entries.
+ * <pre>
+ * java -Djdk.attach.allowAttachSelf -cp target/benchmarks.jar com.nbenliogludev.benchmark.CacheFootprint [entries]
+ * </pre>
+ *
+ * @author nbenliogludev
+ */
+public final class CacheFootprint {
+
+    private static final String[][] CONDITIONS = {
+            {"Clouds", "overcast clouds"}, {"Clouds", "broken clouds"}, {"Clear", "clear sky"},
+            {"Rain", "light rain"}, {"Rain", "moderate rain"}, {"Snow", "light snow"},
+            {"Mist", "mist"}, {"Drizzle", "light intensity drizzle"}};
+
+    private CacheFootprint() {}
+
+    public static void main(String[] args) throws IOException {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        long objects = footprint(entries, false);
+        long compact = footprint(entries, true);
+
+        System.out.printf("%,d entries%n", entries);
+        System.out.printf("object entries:  %,14d bytes  %,6d bytes/entry%n", objects, objects / entries);
+        System.out.printf("compact entries: %,14d bytes  %,6d bytes/entry%n", compact, compact / entries);
+        System.out.printf("saved:           %13.1f %%%n", 100.0 * (objects - compact) / objects);
+    }
+
+    private static long footprint(int entries, boolean compact) throws IOException {
+        WeatherCache cache = new WeatherCache(entries, 600_000L, 0L, compact, NoopWeatherMetrics.INSTANCE);
+        WeatherResponseParser parser = new WeatherResponseParser();
+        for (int i = 0; i < entries; i++) {
+            String[] condition = CONDITIONS[i % CONDITIONS.length];
+            WeatherResponse response = parser.parse(new ByteArrayInputStream(payload(i, condition)));
+            cache.put("city-" + i, response);
+        }
+        return GraphLayout.parseInstance(cache).totalSize();
+    }
+
+    private static byte[] payload(int i, String[] condition) {
+        String json = "{\"weather\":[{\"id\":803,\"main\":\"" + condition[0] + "\",\"description\":\""
+                + condition[1] + "\",\"icon\":\"04d\"}],"
+                + "\"main\":{\"temp\":" + (270 + i % 40) + ".15,\"feels_like\":" + (268 + i % 40) + ".4},"
+                + "\"visibility\":10000,\"wind\":{\"speed\":" + (i % 15) + ".6},\"dt\":" + (1_700_000_000L + i)
+                + ",\"sys\":{\"sunrise\":1699990000,\"sunset\":1700020000},\"timezone\":3600,"
+                + "\"name\":\"City " + i + "\"}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
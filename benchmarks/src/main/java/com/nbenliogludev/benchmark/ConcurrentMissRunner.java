@@ -0,0 +1,95 @@
+package com.nbenliogludev.benchmark;
+
+import com.nbenliogludev.WeatherClient;
+import com.nbenliogludev.WeatherClients;
+import com.nbenliogludev.WeatherResult;
+import com.nbenliogludev.exception.WeatherSdkException;
+import com.nbenliogludev.internal.VirtualThreads;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends many distinct cache misses at once through a batch lookup against a loopback stub with a fixed upstream
+ * latency, once with platform threads and once with virtual threads, and prints wall time, throughput and the
+ * peak number of live threads. Virtual threads are skipped on JDKs older than 21.
+ * <p>
+ * Arguments: number of misses (default 10000), stub latency in ms (default 50), connections per host (default 1000).
+ *
+ * @author nbenliogludev
+ */
+public final class ConcurrentMissRunner {
+
+    private static final String API_KEY = "concurrent-miss-runner";
+
+    private ConcurrentMissRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        int misses = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        long latencyMillis = args.length > 1 ? Long.parseLong(args[1]) : 50L;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+
+        System.out.printf("%,d concurrent misses, %d ms upstream latency, %,d connections, JDK %s%n",
+                misses, latencyMillis, connections, System.getProperty("java.version"));
+        run("platform", false, misses, latencyMillis, connections);
+        if (VirtualThreads.isSupported()) {
+            run("virtual", true, misses, latencyMillis, connections);
+        } else {
+            System.out.println("virtual   skipped, this JDK has no virtual threads");
+        }
+    }
+
+    private static void run(String label, boolean virtual, int misses, long latencyMillis, int connections)
+            throws IOException, WeatherSdkException {
+        ExecutorService serverThreads = VirtualThreads.isSupported()
+                ? VirtualThreads.newExecutor()
+                : Executors.newCachedThreadPool();
+        try (BenchmarkStubServer server = new BenchmarkStubServer(serverThreads, latencyMillis)) {
+            WeatherClient client = WeatherClients.builder(API_KEY)
+                    .baseUrl(server.baseUrl())
+                    .virtualThreads(virtual)
+                    .cacheCapacity(misses)
+                    .batchConcurrency(misses)
+                    .maxConcurrentRequests(misses)
+                    .maxConnectionsPerHost(connections)
+                    .connectTimeout(1, TimeUnit.MINUTES)
+                    .readTimeout(1, TimeUnit.MINUTES)
+                    .retries(0, 0, TimeUnit.MILLISECONDS)
+                    .build();
+            try {
+                client.getCurrentWeather(cities("warmup", 200));
+
+                ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                threads.resetPeakThreadCount();
+                long start = System.nanoTime();
+                Map<String, WeatherResult> results = client.getCurrentWeather(cities(label, misses));
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+                int failed = 0;
+                for (WeatherResult result : results.values()) {
+                    failed += result.isSuccess() ? 0 : 1;
+                }
+                System.out.printf("%-9s %,8d ms %,10.0f misses/s %,7d peak threads %,6d failed%n",
+                        label, elapsedMillis, misses * 1000.0 / Math.max(1, elapsedMillis),
+                        threads.getPeakThreadCount(), failed);
+            } finally {
+                WeatherClients.destroy(API_KEY);
+            }
+        }
+    }
+
+    private static List<String> cities(String prefix, int count) {
+        List<String> cities = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            cities.add(prefix + "-" + i);
+        }
+        return cities;
+    }
+}
@@ -0,0 +1,65 @@
+package com.nbenliogludev.benchmark;
+
+import com.nbenliogludev.WeatherClient;
+import com.nbenliogludev.WeatherClients;
+import com.nbenliogludev.exception.WeatherSdkException;
+import com.nbenliogludev.model.WeatherResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full {@link WeatherClient#getCurrentWeather(String)} round trip against a loopback stub server.
+ * The cache holds a single city and the benchmark alternates between two, so every call is a miss.
+ * Sample mode reports latency percentiles.
+ *
+ * @author nbenliogludev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    private static final String API_KEY = "end-to-end-benchmark";
+    private static final String[] CITIES = {"London", "Paris"};
+
+    private BenchmarkStubServer server;
+    private WeatherClient client;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, WeatherSdkException {
+        server = new BenchmarkStubServer();
+        client = WeatherClients.builder(API_KEY)
+                .baseUrl(server.baseUrl())
+                .cacheCapacity(1)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        WeatherClients.destroy(API_KEY);
+        server.close();
+    }
+
+    @Benchmark
+    public WeatherResponse cacheMiss() throws WeatherSdkException {
+        next ^= 1;
+        return client.getCurrentWeather(CITIES[next]);
+    }
+}
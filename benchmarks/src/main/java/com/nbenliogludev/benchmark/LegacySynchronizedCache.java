@@ -0,0 +1,62 @@
+package com.nbenliogludev.benchmark;
+
+import com.nbenliogludev.model.WeatherResponse;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Copy of the original monitor-guarded, access-ordered cache, kept as a contention baseline.
+ *
+ * @author nbenliogludev
+ */
+class LegacySynchronizedCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final LinkedHashMap<String, CachedEntry> map;
+
+    LegacySynchronizedCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.map = new LinkedHashMap<String, CachedEntry>(16, 0.75f, true);
+    }
+
+    synchronized WeatherResponse getIfFresh(String key) {
+        CachedEntry entry = map.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        if (now - entry.fetchedAtMillis > ttlMillis) {
+            map.remove(key);
+            return null;
+        }
+
+        return entry.response;
+    }
+
+    synchronized void put(String key, WeatherResponse response) {
+        map.put(key, new CachedEntry(response, System.currentTimeMillis()));
+
+        if (map.size() > maxSize) {
+            Iterator<String> it = map.keySet().iterator();
+            if (it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    private static class CachedEntry {
+        private final WeatherResponse response;
+        private final long fetchedAtMillis;
+
+        private CachedEntry(WeatherResponse response, long fetchedAtMillis) {
+            this.response = response;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.nbenliogludev.benchmark;
+
+import com.nbenliogludev.internal.WeatherResponseParser;
+import com.nbenliogludev.model.WeatherResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming {@link WeatherResponseParser} against the original String + tree model mapping.
+ * Run with {@code -prof gc} to compare allocation per operation.
+ *
+ * @author nbenliogludev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"london", "paris", "tokyo"})
+    public String payload;
+
+    private byte[] body;
+    private final WeatherResponseParser streamingParser = new WeatherResponseParser();
+    private final TreeModelParser treeParser = new TreeModelParser();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        body = Payloads.load(payload);
+    }
+
+    @Benchmark
+    public WeatherResponse streaming() throws IOException {
+        return streamingParser.parse(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public WeatherResponse treeModel() throws IOException {
+        return treeParser.parse(new ByteArrayInputStream(body));
+    }
+}
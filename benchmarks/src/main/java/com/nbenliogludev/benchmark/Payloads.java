@@ -0,0 +1,34 @@
+package com.nbenliogludev.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Recorded OpenWeather "current weather" responses bundled with the benchmarks.
+ *
+ * @author nbenliogludev
+ */
+final class Payloads {
+
+    static final String[] NAMES = {"london", "paris", "tokyo"};
+
+    private Payloads() {}
+
+    static byte[] load(String name) {
+        try (InputStream in = Payloads.class.getResourceAsStream("/payloads/" + name + ".json")) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unknown payload " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
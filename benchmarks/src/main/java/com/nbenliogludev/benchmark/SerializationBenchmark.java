@@ -0,0 +1,89 @@
+package com.nbenliogludev.benchmark;
+
+import com.google.gson.Gson;
+import com.nbenliogludev.WeatherClient;
+import com.nbenliogludev.WeatherClients;
+import com.nbenliogludev.exception.WeatherSdkException;
+import com.nbenliogludev.internal.WeatherResponseParser;
+import com.nbenliogludev.model.WeatherResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link WeatherClient#getCurrentWeatherJson(String)} and
+ * {@link WeatherClient#writeCurrentWeatherJson(String, OutputStream)} on a cache hit, and of the bare Gson
+ * serialization the client used to run on every call.
+ *
+ * @author nbenliogludev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private static final String API_KEY = "serialization-benchmark";
+
+    private BenchmarkStubServer server;
+    private WeatherClient client;
+    private WeatherResponse response;
+    private final Gson gson = new Gson();
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, WeatherSdkException {
+        server = new BenchmarkStubServer();
+        client = WeatherClients.builder(API_KEY)
+                .baseUrl(server.baseUrl())
+                .cacheTtl(1, TimeUnit.HOURS)
+                .build();
+        client.getCurrentWeather("London");
+        response = new WeatherResponseParser().parse(new ByteArrayInputStream(Payloads.load("london")));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        WeatherClients.destroy(API_KEY);
+        server.close();
+    }
+
+    @Benchmark
+    public String getCurrentWeatherJsonHit() throws WeatherSdkException {
+        return client.getCurrentWeatherJson("London");
+    }
+
+    @Benchmark
+    public void writeCurrentWeatherJsonHit() throws WeatherSdkException, IOException {
+        client.writeCurrentWeatherJson("London", sink);
+    }
+
+    @Benchmark
+    public String gsonToJson() {
+        return gson.toJson(response);
+    }
+}
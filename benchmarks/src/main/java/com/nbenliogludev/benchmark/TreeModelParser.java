@@ -0,0 +1,110 @@
+package com.nbenliogludev.benchmark;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.nbenliogludev.model.SysInfo;
+import com.nbenliogludev.model.TemperatureInfo;
+import com.nbenliogludev.model.WeatherInfo;
+import com.nbenliogludev.model.WeatherResponse;
+import com.nbenliogludev.model.WindInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Copy of the original body-to-String plus {@code JsonParser} tree mapping, kept as a parsing baseline.
+ *
+ * @author nbenliogludev
+ */
+final class TreeModelParser {
+
+    WeatherResponse parse(InputStream stream) throws IOException {
+        return mapToWeatherResponse(readStream(stream));
+    }
+
+    private String readStream(InputStream stream) throws IOException {
+        InputStreamReader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[1024];
+        int len;
+        try {
+            while ((len = reader.read(buf)) != -1) {
+                sb.append(buf, 0, len);
+            }
+        } finally {
+            reader.close();
+        }
+        return sb.toString();
+    }
+
+    private WeatherResponse mapToWeatherResponse(String json) {
+        JsonObject root = JsonParser.parseString(json).getAsJsonObject();
+
+        WeatherResponse response = new WeatherResponse();
+
+        if (root.has("weather")
+                && root.get("weather").isJsonArray()
+                && root.getAsJsonArray("weather").size() > 0) {
+
+            JsonObject w0 = root.getAsJsonArray("weather")
+                    .get(0).getAsJsonObject();
+
+            String main = getAsStringSafe(w0, "main");
+            String description = getAsStringSafe(w0, "description");
+            response.setWeather(new WeatherInfo(main, description));
+        }
+
+        JsonObject mainNode = getAsObjectSafe(root, "main");
+        response.setTemperature(new TemperatureInfo(
+                getAsDoubleSafe(mainNode, "temp"), getAsDoubleSafe(mainNode, "feels_like")));
+        response.setVisibility(getAsIntSafe(root, "visibility"));
+        response.setWind(new WindInfo(getAsDoubleSafe(getAsObjectSafe(root, "wind"), "speed")));
+        response.setDatetime(getAsLongSafe(root, "dt"));
+
+        JsonObject sysNode = getAsObjectSafe(root, "sys");
+        response.setSys(new SysInfo(getAsLongSafe(sysNode, "sunrise"), getAsLongSafe(sysNode, "sunset")));
+        response.setTimezone(getAsIntSafe(root, "timezone"));
+        response.setName(getAsStringSafe(root, "name"));
+
+        return response;
+    }
+
+    private JsonObject getAsObjectSafe(JsonObject parent, String key) {
+        if (parent == null || !parent.has(key) || !parent.get(key).isJsonObject()) {
+            return new JsonObject();
+        }
+        return parent.getAsJsonObject(key);
+    }
+
+    private String getAsStringSafe(JsonObject obj, String key) {
+        if (obj == null || !obj.has(key) || obj.get(key).isJsonNull()) {
+            return null;
+        }
+        JsonElement el = obj.get(key);
+        return el.isJsonNull() ? null : el.getAsString();
+    }
+
+    private double getAsDoubleSafe(JsonObject obj, String key) {
+        if (obj == null || !obj.has(key) || obj.get(key).isJsonNull()) {
+            return 0.0;
+        }
+        return obj.get(key).getAsDouble();
+    }
+
+    private int getAsIntSafe(JsonObject obj, String key) {
+        if (obj == null || !obj.has(key) || obj.get(key).isJsonNull()) {
+            return 0;
+        }
+        return obj.get(key).getAsInt();
+    }
+
+    private long getAsLongSafe(JsonObject obj, String key) {
+        if (obj == null || !obj.has(key) || obj.get(key).isJsonNull()) {
+            return 0L;
+        }
+        return obj.get(key).getAsLong();
+    }
+}
@@ -0,0 +1,84 @@
+package com.nbenliogludev.benchmark;
+
+import com.nbenliogludev.internal.WeatherCache;
+import com.nbenliogludev.model.WeatherResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hit-path throughput of {@link WeatherCache} against the original synchronized cache.
+ * Run through {@link CacheContentionRunner} to sweep thread counts.
+ *
+ * @author nbenliogludev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeatherCacheBenchmark {
+
+    private static final int KEYS = 1024;
+    private static final int KEY_MASK = KEYS - 1;
+    private static final long TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Param({"concurrent", "synchronized"})
+    public String cache;
+
+    private WeatherCache concurrentCache;
+    private LegacySynchronizedCache synchronizedCache;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        concurrentCache = new WeatherCache(KEYS, TTL_MILLIS);
+        synchronizedCache = new LegacySynchronizedCache(KEYS, TTL_MILLIS);
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "city-" + i;
+            WeatherResponse response = new WeatherResponse();
+            response.setName(keys[i]);
+            concurrentCache.put(keys[i], response);
+            synchronizedCache.put(keys[i], response);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int index = ThreadLocalRandom.current().nextInt(KEYS);
+
+        String next(String[] keys) {
+            index = (index + 1) & KEY_MASK;
+            return keys[index];
+        }
+    }
+
+    @Benchmark
+    public WeatherResponse hit(Cursor cursor) {
+        String key = cursor.next(keys);
+        return "concurrent".equals(cache)
+                ? concurrentCache.getIfFresh(key)
+                : synchronizedCache.getIfFresh(key);
+    }
+
+    @Benchmark
+    public WeatherResponse hitHotKey() {
+        return "concurrent".equals(cache)
+                ? concurrentCache.getIfFresh(keys[0])
+                : synchronizedCache.getIfFresh(keys[0]);
+    }
+}
@@ -1,35 +1,83 @@
 package com.nbenliogludev;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.MalformedJsonException;
 import com.nbenliogludev.exception.WeatherApiException;
 import com.nbenliogludev.exception.WeatherNetworkException;
 import com.nbenliogludev.exception.WeatherNotFoundException;
 import com.nbenliogludev.exception.WeatherParsingException;
 import com.nbenliogludev.exception.WeatherSdkException;
+import com.nbenliogludev.exception.WeatherUnavailableException;
+import com.nbenliogludev.internal.AccessTracker;
+import com.nbenliogludev.internal.CacheValidators;
+import com.nbenliogludev.internal.ChangeNotifier;
+import com.nbenliogludev.internal.CircuitBreaker;
+import com.nbenliogludev.internal.ConcurrencyLimiter;
+import com.nbenliogludev.internal.CountingInputStream;
+import com.nbenliogludev.internal.DaemonThreadFactory;
+import com.nbenliogludev.internal.DiskWeatherStore;
+import com.nbenliogludev.internal.GroupBatcher;
+import com.nbenliogludev.internal.Location;
+import com.nbenliogludev.internal.LocationIndex;
+import com.nbenliogludev.internal.ObservationHistory;
+import com.nbenliogludev.internal.PollingEngine;
+import com.nbenliogludev.internal.ReadBuffers;
+import com.nbenliogludev.internal.RejectableTask;
+import com.nbenliogludev.internal.RetryPolicy;
+import com.nbenliogludev.internal.SharedRuntime;
+import com.nbenliogludev.internal.SharedWeatherCache;
+import com.nbenliogludev.internal.SingleFlight;
+import com.nbenliogludev.internal.TokenBucket;
+import com.nbenliogludev.internal.VirtualThreads;
 import com.nbenliogludev.internal.WeatherCache;
-import com.nbenliogludev.model.SysInfo;
-import com.nbenliogludev.model.TemperatureInfo;
-import com.nbenliogludev.model.WeatherInfo;
+import com.nbenliogludev.internal.WeatherResponseParser;
+import com.nbenliogludev.metrics.WeatherMetrics;
+import com.nbenliogludev.model.CoordInfo;
+import com.nbenliogludev.model.WeatherHistory;
 import com.nbenliogludev.model.WeatherResponse;
-import com.nbenliogludev.model.WindInfo;
+import com.nbenliogludev.subscription.ChangeThresholds;
+import com.nbenliogludev.subscription.WeatherListener;
+import com.nbenliogludev.subscription.WeatherSubscription;
+import com.nbenliogludev.transport.HttpUrlConnectionTransport;
+import com.nbenliogludev.transport.WeatherHttpRequest;
+import com.nbenliogludev.transport.WeatherHttpResponse;
+import com.nbenliogludev.transport.WeatherTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URLEncoder;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
 /**
  * @author nbenliogludev
@@ -38,30 +86,163 @@ public class DefaultWeatherClient implements WeatherClient {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultWeatherClient.class);
 
-    private static final String BASE_URL =
-            "https://api.openweathermap.org/data/2.5/weather";
-
-    private static final int CONNECT_TIMEOUT_MS = 5000;
-    private static final int READ_TIMEOUT_MS = 5000;
-
-    private static final int MAX_CITIES = 10;
-    private static final long CACHE_TTL_MILLIS = 10 * 60 * 1000L;
-    private static final long POLLING_INTERVAL_MILLIS = 5 * 60 * 1000L;
-
     private final String apiKey;
     private final Mode mode;
-    private final Gson gson = new Gson();
+    private final String weatherUrlPrefix;
+    private final String groupUrlPrefix;
+    private final int batchConcurrency;
+    private final long cacheTtlMillis;
+    private final long refreshAfterMillis;
+    private final long maxStaleMillis;
+    private final long staleIfErrorMillis;
+    private final double geoCellDegrees;
+    private final WeatherResponseParser parser = new WeatherResponseParser();
     private final WeatherCache cache;
+    private final LocationIndex index;
+    private final DiskWeatherStore diskStore;
+    private final GroupBatcher batcher;
+    private final long groupWaitMillis;
+    private final AccessTracker accessTracker;
+    private final ObservationHistory history;
+    private final ChangeNotifier notifier;
+    private final SharedWeatherCache sharedCache;
+    private final String sharedScope;
+    private final SingleFlight<WeatherResponse> inFlight = new SingleFlight<WeatherResponse>();
+    private final WeatherTransport transport;
+    private final WeatherMetrics metrics;
+    private final boolean ownsTransport;
+    private final boolean compression;
+    private final CircuitBreaker circuitBreaker;
+    private final RetryPolicy retryPolicy;
+    private final Semaphore bulkhead;
+
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final ScheduledExecutorService scheduler;
+    private final boolean sharesRuntime;
+    private final SharedRuntime.Lane lane;
+    private final Executor backgroundExecutor;
+    private final AtomicBoolean shutDown = new AtomicBoolean();
+    private PollingEngine<List<String>> pollingEngine;
 
-    private ScheduledExecutorService scheduler;
+    private final BodyParser<Fetched> singleParser = singleParser(null);
+
+    private final BodyParser<List<WeatherResponse>> groupParser = new BodyParser<List<WeatherResponse>>() {
+        @Override
+        public List<WeatherResponse> parse(WeatherHttpResponse response, InputStream body) throws IOException {
+            try (ReadBuffers buffers = ReadBuffers.acquire()) {
+                return parser.parseGroup(buffers.read(body).reader());
+            }
+        }
+    };
 
     public DefaultWeatherClient(String apiKey, Mode mode) {
-        this.apiKey = apiKey;
-        this.mode = mode;
-        this.cache = new WeatherCache(MAX_CITIES, CACHE_TTL_MILLIS);
+        this(new WeatherClientBuilder(apiKey).mode(mode));
+    }
+
+    DefaultWeatherClient(WeatherClientBuilder builder) {
+        this.apiKey = builder.apiKey;
+        this.mode = builder.mode;
+        String baseUrl = builder.baseUrl.endsWith("/")
+                ? builder.baseUrl.substring(0, builder.baseUrl.length() - 1)
+                : builder.baseUrl;
+        String unitsParameter = builder.units.parameter() == null ? "" : "&units=" + builder.units.parameter();
+        this.weatherUrlPrefix = baseUrl + "/weather?appid=" + urlEncode(apiKey) + unitsParameter + "&";
+        this.groupUrlPrefix = baseUrl + "/group?appid=" + urlEncode(apiKey) + unitsParameter + "&id=";
+        // responses are shared between keys by upstream and units, never by key
+        this.sharedScope = baseUrl + "|" + builder.units + "|";
+        this.batchConcurrency = builder.batchConcurrency;
+        this.metrics = builder.metrics;
+        this.cacheTtlMillis = builder.cacheTtlMillis;
+        this.refreshAfterMillis = builder.cacheTtlMillis - builder.refreshAheadMillis;
+        this.maxStaleMillis = builder.maxStaleMillis;
+        this.staleIfErrorMillis = builder.staleIfErrorMillis;
+        this.geoCellDegrees = builder.geoCellDegrees;
+        // entries are kept for the longer of the two stale bounds; lookups only serve them within maxStale
+        this.cache = new WeatherCache(builder.cacheCapacity, builder.cacheTtlMillis,
+                Math.max(builder.maxStaleMillis, builder.staleIfErrorMillis), builder.compactCacheStorage, metrics);
+        this.circuitBreaker = new CircuitBreaker(builder.circuitFailureThreshold, builder.circuitOpenMillis);
+        this.retryPolicy = new RetryPolicy(builder.maxRetries, builder.initialBackoffMillis);
+        this.bulkhead = new Semaphore(builder.maxConcurrentRequests);
+        this.index = new LocationIndex(Math.max(1024, 16 * builder.cacheCapacity), new Predicate<String>() {
+            @Override
+            public boolean test(String key) {
+                return cache.contains(key);
+            }
+        });
+        this.diskStore = builder.diskCacheFile == null ? null : openDiskStore(builder);
+        this.accessTracker = mode == Mode.POLLING && builder.adaptiveIdleMillis > 0
+                ? new AccessTracker(builder.adaptiveIdleMillis)
+                : null;
+        this.notifier = mode == Mode.POLLING ? new ChangeNotifier() : null;
+        this.sharedCache = builder.sharedCache ? WeatherClients.acquireSharedCache() : null;
+        this.history = builder.historyCapacity > 0
+                ? new ObservationHistory(builder.historyCapacity, builder.cacheCapacity)
+                : null;
+
+        this.ownsTransport = builder.transport == null;
+        this.compression = builder.compression;
+        this.transport = ownsTransport
+                ? new HttpUrlConnectionTransport((int) builder.connectTimeoutMillis,
+                        (int) builder.readTimeoutMillis, builder.maxConnectionsPerHost)
+                : builder.transport;
+
+        ExecutorService virtualExecutor = null;
+        if (builder.executor == null && builder.virtualThreads) {
+            virtualExecutor = VirtualThreads.newExecutor();
+            if (virtualExecutor == null) {
+                log.info("Virtual threads are not available on this JDK, using platform threads");
+            }
+        }
+        if (builder.executor != null) {
+            this.executor = builder.executor;
+            this.ownedExecutor = null;
+        } else {
+            this.ownedExecutor = virtualExecutor != null
+                    ? virtualExecutor
+                    : Executors.newCachedThreadPool(new DaemonThreadFactory("weather-sdk-fetch"));
+            this.executor = ownedExecutor;
+        }
+
+        boolean needsScheduler = mode == Mode.POLLING || builder.groupWindowMillis > 0;
+        this.sharesRuntime = needsScheduler && builder.scheduler == null;
+        if (sharesRuntime) {
+            // polling and group timers of all clients share a few threads instead of one scheduler each
+            SharedRuntime runtime = WeatherClients.acquireRuntime();
+            this.scheduler = runtime.scheduler();
+            // with virtual threads a blocked refresh costs no platform thread, so it needs no shared worker
+            this.lane = virtualExecutor == null ? runtime.openLane() : null;
+            this.backgroundExecutor = lane != null ? lane : executor;
+        } else {
+            this.scheduler = needsScheduler ? builder.scheduler : null;
+            this.lane = null;
+            this.backgroundExecutor = executor;
+        }
+
+        this.batcher = builder.groupWindowMillis > 0
+                ? new GroupBatcher(scheduler, builder.groupWindowMillis, executor, backgroundExecutor,
+                        new GroupBatcher.Fetcher() {
+                            @Override
+                            public Map<Long, WeatherResponse> fetch(List<Long> ids) throws WeatherSdkException {
+                                return fetchGroupFromApi(ids);
+                            }
+                        })
+                : null;
+        // the batch may wait out the window before its call starts
+        this.groupWaitMillis = builder.groupWindowMillis
+                + retryPolicy.maxCallMillis(builder.connectTimeoutMillis + builder.readTimeoutMillis);
 
         if (mode == Mode.POLLING) {
-            startPolling();
+            startPolling(builder);
+        }
+    }
+
+    private static DiskWeatherStore openDiskStore(WeatherClientBuilder builder) {
+        try {
+            return DiskWeatherStore.open(builder.diskCacheFile, builder.cacheCapacity);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to open disk cache {}, continuing without it", builder.diskCacheFile, e);
+            return null;
         }
     }
 
@@ -70,258 +251,833 @@ public class DefaultWeatherClient implements WeatherClient {
         if (city == null || city.trim().isEmpty()) {
             throw new WeatherSdkException("City name must not be null or empty");
         }
+        return get(Location.ofCity(city));
+    }
+
+    @Override
+    public WeatherResponse getCurrentWeather(double lat, double lon) throws WeatherSdkException {
+        if (!(lat >= -90.0 && lat <= 90.0) || !(lon >= -180.0 && lon <= 180.0)) {
+            throw new WeatherSdkException("Coordinates out of range: " + lat + ", " + lon);
+        }
+        return get(Location.ofCoordinates(lat, lon, geoCellDegrees));
+    }
 
-        String key = normalizeCityKey(city);
+    @Override
+    public WeatherResponse getCurrentWeatherById(long cityId) throws WeatherSdkException {
+        if (cityId <= 0) {
+            throw new WeatherSdkException("City ID must be positive");
+        }
+        return get(Location.ofId(cityId));
+    }
 
-        WeatherResponse cached = cache.getIfFresh(key);
+    private WeatherResponse get(Location location) throws WeatherSdkException {
+        WeatherResponse cached = lookup(location);
         if (cached != null) {
-            log.debug("Cache hit for city '{}'", city);
+            log.debug("Cache hit for '{}'", location);
             return cached;
         }
 
-        log.debug("Cache miss for city '{}', fetching from API", city);
-        WeatherResponse fresh = fetchFromApi(city);
-        cache.put(key, fresh);
-        return fresh;
+        log.debug("Cache miss for '{}', fetching from API", location);
+        // keyed like background refreshes, so a miss by name joins a refresh of the same city by ID
+        return inFlight.execute(index.resolve(location.key()), missLoader(location));
     }
 
     @Override
-    public String getCurrentWeatherJson(String city) throws WeatherSdkException {
-        WeatherResponse response = getCurrentWeather(city);
-        return gson.toJson(response);
+    public CompletionStage<WeatherResponse> getCurrentWeatherAsync(String city) {
+        if (city == null || city.trim().isEmpty()) {
+            CompletableFuture<WeatherResponse> failed = new CompletableFuture<WeatherResponse>();
+            failed.completeExceptionally(new WeatherSdkException("City name must not be null or empty"));
+            return failed;
+        }
+
+        Location location = Location.ofCity(city);
+
+        WeatherResponse cached = lookup(location);
+        if (cached != null) {
+            log.debug("Cache hit for '{}'", location);
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        log.debug("Cache miss for '{}', fetching from API asynchronously", location);
+        return fetchAsync(location);
     }
 
     @Override
-    public void shutdown() {
-        if (scheduler != null) {
-            log.info("Shutting down polling scheduler for API key '{}'", apiKey);
-            scheduler.shutdownNow();
+    public Map<String, WeatherResult> getCurrentWeather(Collection<String> cities) throws WeatherSdkException {
+        if (cities == null) {
+            throw new WeatherSdkException("Cities must not be null");
         }
+
+        Map<String, WeatherResult> results = new LinkedHashMap<String, WeatherResult>();
+        Map<String, CompletableFuture<WeatherResponse>> pending =
+                new LinkedHashMap<String, CompletableFuture<WeatherResponse>>();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(batchConcurrency);
+
+        for (String city : cities) {
+            if (results.containsKey(city)) {
+                continue;
+            }
+            if (city == null || city.trim().isEmpty()) {
+                results.put(city, WeatherResult.failure(
+                        new WeatherSdkException("City name must not be null or empty")));
+                continue;
+            }
+
+            Location location = Location.ofCity(city);
+            WeatherResponse cached = lookup(location);
+            if (cached != null) {
+                results.put(city, WeatherResult.success(cached));
+                continue;
+            }
+
+            // placeholder keeps the caller's order; replaced once the fetch completes
+            results.put(city, null);
+            CompletableFuture<WeatherResponse> result = new CompletableFuture<WeatherResponse>();
+            pending.put(city, result);
+            limiter.submit(new Supplier<CompletionStage<WeatherResponse>>() {
+                @Override
+                public CompletionStage<WeatherResponse> get() {
+                    return fetchAsync(location).whenComplete(new BiConsumer<WeatherResponse, Throwable>() {
+                        @Override
+                        public void accept(WeatherResponse response, Throwable error) {
+                            if (error != null) {
+                                result.completeExceptionally(error);
+                            } else {
+                                result.complete(response);
+                            }
+                        }
+                    });
+                }
+            });
+        }
+
+        log.debug("Batch lookup: {} cities answered from cache, {} fetched from API",
+                results.size() - pending.size(), pending.size());
+
+        for (Map.Entry<String, CompletableFuture<WeatherResponse>> entry : pending.entrySet()) {
+            results.put(entry.getKey(), awaitResult(entry.getValue()));
+        }
+        return results;
     }
 
-    private void startPolling() {
-        log.info("Starting polling scheduler for API key '{}'", apiKey);
-        scheduler = Executors.newSingleThreadScheduledExecutor();
+    private WeatherResult awaitResult(CompletableFuture<WeatherResponse> future) {
+        try {
+            return WeatherResult.success(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return WeatherResult.failure(new WeatherSdkException("Interrupted while waiting for weather data", e));
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e.getCause());
+            if (cause instanceof WeatherSdkException) {
+                return WeatherResult.failure((WeatherSdkException) cause);
+            }
+            return WeatherResult.failure(new WeatherSdkException("Failed to fetch weather data", cause));
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private WeatherResponse lookup(Location location) {
+        WeatherCache.Entry entry = lookupEntry(location);
+        return entry == null ? null : entry.getResponse();
+    }
+
+    /**
+     * Returns the cached entry if it may be served. An entry that is stale, or fresh but within the
+     * refresh-ahead window, is still returned and refreshed in the background.
+     */
+    private WeatherCache.Entry lookupEntry(Location location) {
+        WeatherCache.Entry entry = cache.getEntry(index.resolve(location.key()), cacheTtlMillis + maxStaleMillis);
+        if (entry == null) {
+            return null;
+        }
+
+        String key = entry.getKey();
+        if (accessTracker != null) {
+            accessTracker.record(key);
+        }
+        long age = System.currentTimeMillis() - entry.getFetchedAtMillis();
+        if (age > refreshAfterMillis && !inFlight.isInFlight(key)) {
+            log.debug("Serving {} entry for '{}' while refreshing it in the background",
+                    age > cacheTtlMillis ? "stale" : "expiring", location);
+            refreshAsync(key);
+        }
+        return entry;
+    }
 
-        scheduler.scheduleAtFixedRate(new Runnable() {
+    private CompletableFuture<WeatherResponse> fetchAsync(Location location) {
+        return inFlight.executeAsync(index.resolve(location.key()), missLoader(location), executor);
+    }
+
+    private SingleFlight.Loader<WeatherResponse> missLoader(Location location) {
+        return new SingleFlight.Loader<WeatherResponse>() {
             @Override
-            public void run() {
+            public WeatherResponse load() throws WeatherSdkException {
+                // another caller may have filled the cache right before we became the leader
+                WeatherResponse cached = cache.peekIfFresh(index.resolve(location.key()));
+                if (cached != null) {
+                    return cached;
+                }
+                WeatherResponse restored = restoreFromDisk(location);
+                if (restored != null) {
+                    return restored;
+                }
                 try {
-                    refreshAll();
-                } catch (Throwable t) {
-                    log.warn("Polling cycle failed for API key '{}'", apiKey, t);
+                    return fetchAndCache(location);
+                } catch (WeatherSdkException e) {
+                    WeatherResponse stale = staleIfError(location, e);
+                    if (stale == null) {
+                        throw e;
+                    }
+                    return stale;
                 }
             }
-        }, 0, POLLING_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        };
+    }
+
+    /**
+     * Falls back to the last cached response when the API is unreachable and stale-if-error allows it.
+     */
+    private WeatherResponse staleIfError(Location location, WeatherSdkException error) {
+        if (staleIfErrorMillis == 0 || !(error instanceof WeatherUnavailableException
+                || RetryPolicy.isTransient(error) || RetryPolicy.isThrottled(error))) {
+            return null;
+        }
+        WeatherCache.Entry entry = cache.peekStale(index.resolve(location.key()));
+        if (entry == null
+                || System.currentTimeMillis() - entry.getFetchedAtMillis() > cacheTtlMillis + staleIfErrorMillis) {
+            return null;
+        }
+        log.warn("Serving stale weather for '{}' because the weather API is unavailable: {}",
+                location, error.getMessage());
+        return entry.getResponse();
+    }
+
+    @Override
+    public String getCurrentWeatherJson(String city) throws WeatherSdkException {
+        return jsonEntry(city).getJson();
+    }
+
+    @Override
+    public void writeCurrentWeatherJson(String city, OutputStream out) throws WeatherSdkException, IOException {
+        out.write(jsonEntry(city).getJsonBytes());
+    }
+
+    @Override
+    public void appendCurrentWeatherJson(String city, Appendable out) throws WeatherSdkException, IOException {
+        out.append(jsonEntry(city).getJson());
     }
 
-    private void refreshAll() {
-        Map<String, WeatherResponse> snapshot = cache.snapshot();
-        if (snapshot.isEmpty()) {
-            log.debug("Polling skipped for API key '{}': cache is empty", apiKey);
+    @Override
+    public WeatherSubscription subscribe(String city, WeatherListener listener) throws WeatherSdkException {
+        return subscribe(city, ChangeThresholds.DEFAULT, listener);
+    }
+
+    @Override
+    public WeatherSubscription subscribe(String city, ChangeThresholds thresholds, WeatherListener listener)
+            throws WeatherSdkException {
+        if (notifier == null) {
+            throw new WeatherSdkException("Subscriptions require POLLING mode");
+        }
+        if (thresholds == null || listener == null) {
+            throw new WeatherSdkException("Thresholds and listener must not be null");
+        }
+        WeatherResponse current = getCurrentWeather(city);
+        Location location = Location.ofCity(city);
+        return notifier.subscribe(index.resolve(location.key()), city.trim(), thresholds, listener, current);
+    }
+
+    @Override
+    public WeatherHistory getHistory(String city, long fromEpochSecond, long toEpochSecond)
+            throws WeatherSdkException {
+        if (history == null) {
+            throw new WeatherSdkException("History is not enabled for this client");
+        }
+        if (city == null || city.trim().isEmpty()) {
+            throw new WeatherSdkException("City name must not be null or empty");
+        }
+        return history.query(index.resolve(Location.ofCity(city).key()), fromEpochSecond, toEpochSecond);
+    }
+
+    /**
+     * Resolves the cache entry whose memoized JSON answers {@code city}, fetching it on a miss.
+     */
+    private WeatherCache.Entry jsonEntry(String city) throws WeatherSdkException {
+        if (city == null || city.trim().isEmpty()) {
+            throw new WeatherSdkException("City name must not be null or empty");
+        }
+
+        Location location = Location.ofCity(city);
+        WeatherCache.Entry entry = lookupEntry(location);
+        if (entry != null) {
+            return entry;
+        }
+
+        WeatherResponse response = get(location);
+        entry = cache.peekEntry(index.resolve(location.key()));
+        // evicted before we could read it back, e.g. with a tiny cache under load
+        return entry != null ? entry : WeatherCache.detachedEntry(location.key(), response);
+    }
+
+    /**
+     * Number of calls that did not go upstream because an identical request was already in flight.
+     */
+    public long getCoalescedRequestCount() {
+        return inFlight.getCoalescedCount();
+    }
+
+    /**
+     * Number of upstream fetches performed for cache misses and polling refreshes.
+     */
+    public long getUpstreamRequestCount() {
+        return inFlight.getExecutionCount();
+    }
+
+    @Override
+    public void shutdown() {
+        if (!shutDown.compareAndSet(false, true)) {
             return;
         }
+        // stop starting work first, then fail queued work, and only then close what running work uses
+        if (pollingEngine != null) {
+            log.info("Stopping polling for API key '{}'", apiKey);
+            pollingEngine.stop();
+        }
+        if (batcher != null) {
+            batcher.close();
+        }
+        if (notifier != null) {
+            notifier.close();
+        }
+        if (sharedCache != null) {
+            WeatherClients.releaseSharedCache();
+        }
+        if (ownedExecutor != null) {
+            RejectableTask.rejectAll(ownedExecutor.shutdownNow(), "Weather client has been shut down");
+        }
+        if (lane != null) {
+            lane.close();
+        }
+        if (ownsTransport) {
+            transport.close();
+        }
+        if (diskStore != null) {
+            diskStore.close();
+        }
+        if (sharesRuntime) {
+            WeatherClients.releaseRuntime();
+        }
+    }
 
-        log.debug("Polling {} cached cities for API key '{}'", snapshot.size(), apiKey);
+    private void startPolling(WeatherClientBuilder builder) {
+        log.info("Starting polling scheduler for API key '{}'", apiKey);
 
-        for (Map.Entry<String, WeatherResponse> entry : snapshot.entrySet()) {
-            String key = entry.getKey();
-            WeatherResponse current = entry.getValue();
+        TokenBucket rateLimiter = new TokenBucket(builder.pollingCallsPerMinute, 1);
+        pollingEngine = new PollingEngine<List<String>>(scheduler,
+                builder.pollingIntervalMillis, builder.pollingConcurrency, rateLimiter,
+                new PollingEngine.Target<List<String>>() {
+                    @Override
+                    public Collection<List<String>> items() {
+                        // subscribed cities are refreshed every cycle, even after leaving the cache
+                        Set<String> keys = new LinkedHashSet<String>(cache.keys());
+                        keys.addAll(notifier.keys());
+                        if (accessTracker == null) {
+                            return pollingGroups(keys);
+                        }
+                        Set<String> due = new LinkedHashSet<String>(accessTracker.selectDue(keys));
+                        due.addAll(notifier.keys());
+                        log.debug("Adaptive polling: {} of {} cached cities due for refresh", due.size(), keys.size());
+                        return pollingGroups(due);
+                    }
 
-            String cityName = (current != null && current.getName() != null)
-                    ? current.getName()
-                    : key;
+                    @Override
+                    public CompletionStage<?> refresh(List<String> keys) {
+                        if (keys.size() == 1) {
+                            return refreshAsync(keys.get(0));
+                        }
+                        CompletableFuture<?>[] refreshes = new CompletableFuture<?>[keys.size()];
+                        for (int i = 0; i < refreshes.length; i++) {
+                            refreshes[i] = refreshAsync(keys.get(i));
+                        }
+                        return CompletableFuture.allOf(refreshes);
+                    }
+                }, metrics);
+        pollingEngine.start();
+    }
 
-            try {
-                WeatherResponse fresh = fetchFromApi(cityName);
-                cache.put(key, fresh);
-                log.debug("Refreshed weather for city '{}'", cityName);
-            } catch (WeatherSdkException e) {
-                log.warn("Failed to refresh weather for city '{}'", cityName, e);
+    /**
+     * Splits the cached keys into polling items: city IDs in groups that fill one group call each when
+     * group requests are enabled, every other key on its own. Each item then costs one upstream call.
+     */
+    private List<List<String>> pollingGroups(Collection<String> keys) {
+        List<List<String>> items = new ArrayList<List<String>>();
+        List<String> group = new ArrayList<String>();
+        for (String key : keys) {
+            if (batcher == null || !Location.isIdKey(key)) {
+                items.add(Collections.singletonList(key));
+                continue;
+            }
+            group.add(key);
+            if (group.size() == GroupBatcher.MAX_GROUP_SIZE) {
+                items.add(group);
+                group = new ArrayList<String>();
             }
         }
+        if (!group.isEmpty()) {
+            items.add(group);
+        }
+        return items;
     }
 
-    private WeatherResponse fetchFromApi(String city) throws WeatherSdkException {
-        HttpResult result;
-        try {
-            result = executeRequest(city);
-        } catch (IOException e) {
-            log.warn("Network error when calling weather API for city '{}'", city, e);
-            throw new WeatherNetworkException("Network error when calling weather API", e);
+    private CompletableFuture<WeatherResponse> refreshAsync(String key) {
+        Location location = Location.fromKey(key, geoCellDegrees);
+
+        CompletableFuture<WeatherResponse> refresh;
+        if (batcher != null && location.id() > 0) {
+            // joins the current group without holding a thread while the group is collected
+            refresh = inFlight.executeAsync(key, new Supplier<CompletionStage<WeatherResponse>>() {
+                @Override
+                public CompletionStage<WeatherResponse> get() {
+                    return batcher.refreshAsync(location.id()).thenApply(
+                            new Function<WeatherResponse, WeatherResponse>() {
+                                @Override
+                                public WeatherResponse apply(WeatherResponse fresh) {
+                                    if (sharedCache != null) {
+                                        sharedCache.put(apiKey, sharedScope, location, fresh, geoCellDegrees);
+                                    }
+                                    return cacheFetched(location, fresh, null, System.currentTimeMillis());
+                                }
+                            });
+                }
+            });
+        } else {
+            refresh = inFlight.executeAsync(key, new SingleFlight.Loader<WeatherResponse>() {
+                @Override
+                public WeatherResponse load() throws WeatherSdkException {
+                    return revalidate(location);
+                }
+            }, backgroundExecutor);
         }
 
-        if (result.statusCode != HttpURLConnection.HTTP_OK) {
-            String errorMessage = extractErrorMessage(result.body);
-            String message = "Weather API returned status " + result.statusCode;
-            if (errorMessage != null) {
-                message += ": " + errorMessage;
+        return refresh.whenComplete(new BiConsumer<WeatherResponse, Throwable>() {
+            @Override
+            public void accept(WeatherResponse response, Throwable error) {
+                if (error == null) {
+                    log.debug("Refreshed weather for '{}'", location);
+                } else if (unwrap(error) instanceof WeatherUnavailableException) {
+                    log.debug("Skipped refresh of '{}': {}", location, unwrap(error).getMessage());
+                } else {
+                    log.warn("Failed to refresh weather for '{}'", location, error);
+                }
             }
+        });
+    }
 
-            if (result.statusCode == HttpURLConnection.HTTP_NOT_FOUND) {
-                log.info("City '{}' not found by weather API", city);
-                throw new WeatherNotFoundException(message, result.body);
-            }
+    private WeatherResponse fetchAndCache(Location location) throws WeatherSdkException {
+        if (sharedCache != null) {
+            // a shared entry no newer than ours comes from the same upstream call and would not refresh anything;
+            // one older than our own TTL would be expired here, however long the shared TTL is
+            WeatherCache.Entry local = cache.peekStale(index.resolve(location.key()));
+            long newerThan = Math.max(local == null ? Long.MIN_VALUE : local.getFetchedAtMillis(),
+                    System.currentTimeMillis() - cacheTtlMillis);
+            WeatherCache.Entry shared = sharedCache.get(apiKey, sharedScope, location, geoCellDegrees, newerThan,
+                    new SingleFlight.Loader<WeatherResponse>() {
+                        @Override
+                        public WeatherResponse load() throws WeatherSdkException {
+                            return fetch(location).response;
+                        }
+                    });
+            // the local entry ages from the upstream call, wherever it was made
+            return cacheFetched(location, shared.getResponse(), null, shared.getFetchedAtMillis());
+        }
+        Fetched fetched = fetch(location);
+        return cacheFetched(location, fetched.response, fetched.validators, System.currentTimeMillis());
+    }
 
-            log.warn("Weather API error for city '{}': status {}", city, result.statusCode);
-            throw new WeatherApiException(message, result.statusCode, result.body);
+    private Fetched fetch(Location location) throws WeatherSdkException {
+        if (batcher != null && location.id() > 0) {
+            return new Fetched(batcher.fetch(location.id(), groupWaitMillis), null);
         }
+        return callApi(request(weatherUrlPrefix + location.query(), Collections.<String, String>emptyMap()),
+                location, singleParser);
+    }
 
-        try {
-            WeatherResponse response = mapToWeatherResponse(result.body);
-            log.debug("Successfully parsed weather response for city '{}'", city);
-            return response;
-        } catch (Exception e) {
-            log.error("Failed to parse weather API response for city '{}'", city, e);
-            throw new WeatherParsingException("Failed to parse weather API response", e);
+    /**
+     * Refreshes a cached entry with a conditional request. When the API answers 304 or sends the same body
+     * as last time, the entry is only renewed: nothing is parsed and the cached response is kept.
+     */
+    private WeatherResponse revalidate(Location location) throws WeatherSdkException {
+        WeatherCache.Entry current = cache.peekStale(location.key());
+        if (current == null || current.getValidators() == null) {
+            return fetchAndCache(location);
         }
+        CacheValidators validators = current.getValidators();
+        WeatherHttpRequest request = request(weatherUrlPrefix + location.query(), validators.conditionalHeaders());
+        Fetched fetched = callApi(request, location, singleParser(validators));
+        if (fetched.response != null) {
+            return cacheFetched(location, fetched.response, fetched.validators, System.currentTimeMillis());
+        }
+        log.debug("Weather for '{}' has not changed, renewing cached entry", location);
+        return renew(location, current, fetched.validators, System.currentTimeMillis());
     }
 
-    private HttpResult executeRequest(String city) throws IOException {
-        String encodedCity = URLEncoder.encode(city, "UTF-8");
-        String urlStr = BASE_URL + "?q=" + encodedCity + "&appid=" + apiKey;
+    private WeatherResponse cacheFetched(Location location, WeatherResponse fresh, CacheValidators validators,
+                                         long fetchedAt) {
+        WeatherCache.Entry current = cache.peekStale(primaryKey(location, fresh));
+        if (current != null && fresh.getDatetime() > 0 && current.getDatetime() == fresh.getDatetime()) {
+            // same observation as the cached one: keep its response and serialized JSON
+            link(location, fresh, current.getKey());
+            return renew(location, current, validators, Math.max(fetchedAt, current.getFetchedAtMillis()));
+        }
+        store(location, fresh, fetchedAt).setValidators(validators);
+        if (notifier != null) {
+            notifier.publish(primaryKey(location, fresh), fresh);
+        }
+        if (diskStore != null) {
+            diskStore.putAsync(primaryKey(location, fresh), fresh, fetchedAt);
+        }
+        return fresh;
+    }
 
-        URL url = new URL(urlStr);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
-        conn.setReadTimeout(READ_TIMEOUT_MS);
+    /**
+     * Marks an unchanged entry as fetched at {@code fetchedAt}, storing it again if it left the cache meanwhile.
+     */
+    private WeatherResponse renew(Location location, WeatherCache.Entry entry, CacheValidators validators,
+                                  long fetchedAt) {
+        WeatherResponse response = entry.getResponse();
+        if (validators == null) {
+            validators = entry.getValidators();
+        }
+        if (cache.renew(entry, fetchedAt)) {
+            entry.setValidators(validators);
+        } else {
+            store(location, response, fetchedAt).setValidators(validators);
+        }
+        if (diskStore != null) {
+            diskStore.putAsync(primaryKey(location, response), response, fetchedAt);
+        }
+        return response;
+    }
 
-        int status = conn.getResponseCode();
-        InputStream stream = (status >= 200 && status < 300)
-                ? conn.getInputStream()
-                : conn.getErrorStream();
+    /**
+     * Caches a response under its city ID when the API reported one, and points the requested location
+     * and the grid cell of the reported coordinates at that entry.
+     */
+    private WeatherCache.Entry store(Location location, WeatherResponse response, long fetchedAt) {
+        String primary = primaryKey(location, response);
+        WeatherCache.Entry entry = cache.put(primary, response, fetchedAt);
+        link(location, response, primary);
+        if (history != null) {
+            history.record(primary, response);
+        }
+        return entry;
+    }
 
-        String body = readStream(stream);
-        conn.disconnect();
+    private static String primaryKey(Location location, WeatherResponse response) {
+        return response.getId() > 0 ? Location.idKey(response.getId()) : location.key();
+    }
 
-        log.debug("HTTP {} from weather API for city '{}'", status, city);
-        return new HttpResult(status, body);
+    private void link(Location location, WeatherResponse response, String primary) {
+        // not the reported name: "London,CA" answers with name "London", which must keep meaning London, GB
+        link(location.key(), primary);
+        CoordInfo coord = response.getCoord();
+        if (coord != null) {
+            link(Location.cellKey(coord.getLat(), coord.getLon(), geoCellDegrees), primary);
+        }
     }
 
-    private String readStream(InputStream stream) throws IOException {
-        if (stream == null) {
-            return "";
+    private void link(String alias, String primary) {
+        // refreshes only rewrite the primary key on disk, so a restarted client needs the alias to find it
+        if (index.link(alias, primary) && diskStore != null) {
+            diskStore.linkAsync(alias, primary);
         }
-        InputStreamReader reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
-        StringBuilder sb = new StringBuilder();
-        char[] buf = new char[1024];
-        int len;
-        try {
-            while ((len = reader.read(buf)) != -1) {
-                sb.append(buf, 0, len);
-            }
-        } finally {
-            reader.close();
+    }
+
+    /**
+     * Moves a response stored before a restart into the memory cache. A stale one is only used when
+     * stale-while-revalidate allows it; the next read then refreshes it in the background.
+     */
+    private WeatherResponse restoreFromDisk(Location location) {
+        if (diskStore == null) {
+            return null;
         }
-        return sb.toString();
+        DiskWeatherStore.Stored stored = diskStore.get(location.key());
+        if (stored == null) {
+            return null;
+        }
+        long age = System.currentTimeMillis() - stored.getFetchedAtMillis();
+        if (age > cacheTtlMillis + maxStaleMillis) {
+            return null;
+        }
+        store(location, stored.getResponse(), stored.getFetchedAtMillis());
+        log.debug("Restored weather for '{}' from disk cache", location);
+        return stored.getResponse();
     }
 
-    private String extractErrorMessage(String json) {
-        try {
-            JsonObject obj = JsonParser.parseString(json).getAsJsonObject();
-            if (obj.has("message") && !obj.get("message").isJsonNull()) {
-                return obj.get("message").getAsString();
+    /**
+     * Calls the API behind the bulkhead and circuit breaker, retrying transient failures with backoff.
+     * The bulkhead permit is only held during attempts, not while waiting to retry; a retry that finds
+     * the bulkhead full gives up with the failure it was retrying.
+     */
+    private <T> T callApi(WeatherHttpRequest request, Object subject, BodyParser<T> bodyParser)
+            throws WeatherSdkException {
+        if (!bulkhead.tryAcquire()) {
+            log.warn("Too many weather API calls in flight, rejecting call for '{}'", subject);
+            throw new WeatherUnavailableException("Too many concurrent weather API calls");
+        }
+        for (int attempt = 0; ; attempt++) {
+            WeatherSdkException failure;
+            long delay;
+            try {
+                if (!circuitBreaker.tryAcquire()) {
+                    throw new WeatherUnavailableException("Weather API is unavailable, circuit breaker is open");
+                }
+                try {
+                    T result = callApiOnce(request, subject, bodyParser);
+                    circuitBreaker.onSuccess();
+                    return result;
+                } catch (WeatherSdkException e) {
+                    if (RetryPolicy.isTransient(e)) {
+                        circuitBreaker.onFailure();
+                    } else {
+                        // the API answered, so it is healthy even if it did not like the request
+                        circuitBreaker.onSuccess();
+                    }
+                    delay = retryPolicy.retryDelayMillis(e, attempt);
+                    if (delay < 0) {
+                        throw e;
+                    }
+                    failure = e;
+                } catch (RuntimeException | Error e) {
+                    circuitBreaker.onFailure();
+                    throw e;
+                }
+            } finally {
+                bulkhead.release();
+            }
+
+            log.debug("Retrying weather API call for '{}' in {} ms: {}", subject, delay, failure.getMessage());
+            sleep(delay);
+            if (!bulkhead.tryAcquire()) {
+                log.warn("Too many weather API calls in flight, not retrying call for '{}'", subject);
+                throw failure;
             }
-        } catch (Exception ignored) {
-            log.debug("Failed to extract error message from API response");
         }
-        return null;
     }
 
-    private WeatherResponse mapToWeatherResponse(String json) {
-        JsonObject root = JsonParser.parseString(json).getAsJsonObject();
-
-        WeatherResponse response = new WeatherResponse();
+    private static void sleep(long millis) throws WeatherSdkException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WeatherSdkException("Interrupted while waiting to retry weather API call", e);
+        }
+    }
 
-        if (root.has("weather")
-                && root.get("weather").isJsonArray()
-                && root.getAsJsonArray("weather").size() > 0) {
+    private Map<Long, WeatherResponse> fetchGroupFromApi(List<Long> ids) throws WeatherSdkException {
+        StringBuilder url = new StringBuilder(groupUrlPrefix);
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                url.append(',');
+            }
+            url.append(ids.get(i));
+        }
 
-            JsonObject w0 = root.getAsJsonArray("weather")
-                    .get(0).getAsJsonObject();
+        List<WeatherResponse> responses = callApi(request(url.toString(), Collections.<String, String>emptyMap()),
+                "group of " + ids.size() + " cities", groupParser);
+        Map<Long, WeatherResponse> byId = new HashMap<Long, WeatherResponse>();
+        for (WeatherResponse response : responses) {
+            byId.put(response.getId(), response);
+        }
+        return byId;
+    }
 
-            String main = getAsStringSafe(w0, "main");
-            String description = getAsStringSafe(w0, "description");
-            response.setWeather(new WeatherInfo(main, description));
+    private WeatherHttpRequest request(String url, Map<String, String> headers) {
+        if (!compression) {
+            return new WeatherHttpRequest(url, headers);
         }
+        Map<String, String> withEncoding = new LinkedHashMap<String, String>(headers);
+        withEncoding.put("Accept-Encoding", "gzip");
+        return new WeatherHttpRequest(url, withEncoding);
+    }
 
-        JsonObject mainNode = getAsObjectSafe(root, "main");
-        double temp = getAsDoubleSafe(mainNode, "temp");
-        double feelsLike = getAsDoubleSafe(mainNode, "feels_like");
-        response.setTemperature(new TemperatureInfo(temp, feelsLike));
+    /**
+     * Performs one upstream call. {@code subject} only describes the request in logs.
+     */
+    private <T> T callApiOnce(WeatherHttpRequest request, Object subject, BodyParser<T> bodyParser)
+            throws WeatherSdkException {
+        long start = System.nanoTime();
+        WeatherHttpResponse response;
+        try {
+            response = transport.execute(request);
+        } catch (IOException e) {
+            metrics.upstreamRequest(WeatherMetrics.NO_RESPONSE, System.nanoTime() - start);
+            log.warn("Network error when calling weather API for '{}'", subject, e);
+            throw new WeatherNetworkException("Network error when calling weather API", e);
+        }
 
-        int visibility = getAsIntSafe(root, "visibility");
-        response.setVisibility(visibility);
+        try {
+            int status = response.getStatusCode();
+            metrics.upstreamRequest(status, System.nanoTime() - start);
+            log.debug("HTTP {} from weather API for '{}'", status, subject);
 
-        JsonObject windNode = getAsObjectSafe(root, "wind");
-        double speed = getAsDoubleSafe(windNode, "speed");
-        response.setWind(new WindInfo(speed));
+            boolean notModified = status == HttpURLConnection.HTTP_NOT_MODIFIED && isConditional(request);
+            if (status != HttpURLConnection.HTTP_OK && !notModified) {
+                long retryAfter = RetryPolicy.parseRetryAfter(response.getHeader("Retry-After"),
+                        System.currentTimeMillis());
+                throw apiError(subject, status, readErrorBody(subject, response), retryAfter);
+            }
+            return parseBody(subject, response, bodyParser);
+        } finally {
+            closeQuietly(response);
+        }
+    }
 
-        long dt = getAsLongSafe(root, "dt");
-        response.setDatetime(dt);
+    private <T> T parseBody(Object subject, WeatherHttpResponse response, BodyParser<T> bodyParser)
+            throws WeatherSdkException {
+        try {
+            long start = System.nanoTime();
+            CountingInputStream body = new CountingInputStream(response.getBody());
+            InputStream decoded = response.getStatusCode() == HttpURLConnection.HTTP_OK ? decode(response, body) : body;
+            T parsed = bodyParser.parse(response, decoded);
+            metrics.responseParsed(System.nanoTime() - start, body.getCount());
+            log.debug("Successfully parsed weather response for '{}'", subject);
+            return parsed;
+        } catch (MalformedJsonException | EOFException e) {
+            log.error("Failed to parse weather API response for '{}'", subject, e);
+            throw new WeatherParsingException("Failed to parse weather API response", e);
+        } catch (IOException e) {
+            log.warn("Network error when reading weather API response for '{}'", subject, e);
+            throw new WeatherNetworkException("Network error when calling weather API", e);
+        } catch (RuntimeException e) {
+            log.error("Failed to parse weather API response for '{}'", subject, e);
+            throw new WeatherParsingException("Failed to parse weather API response", e);
+        }
+    }
 
-        JsonObject sysNode = getAsObjectSafe(root, "sys");
-        long sunrise = getAsLongSafe(sysNode, "sunrise");
-        long sunset = getAsLongSafe(sysNode, "sunset");
-        response.setSys(new SysInfo(sunrise, sunset));
+    private String readErrorBody(Object subject, WeatherHttpResponse response) throws WeatherSdkException {
+        try {
+            return readStream(decode(response, response.getBody()));
+        } catch (IOException e) {
+            log.warn("Network error when reading weather API error for '{}'", subject, e);
+            throw new WeatherNetworkException("Network error when calling weather API", e);
+        }
+    }
 
-        int timezone = getAsIntSafe(root, "timezone");
-        response.setTimezone(timezone);
+    private WeatherApiException apiError(Object subject, int status, String body, long retryAfterMillis) {
+        String errorMessage = extractErrorMessage(body);
+        String message = "Weather API returned status " + status;
+        if (errorMessage != null) {
+            message += ": " + errorMessage;
+        }
 
-        String name = getAsStringSafe(root, "name");
-        response.setName(name);
+        if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+            log.info("Location '{}' not found by weather API", subject);
+            return new WeatherNotFoundException(message, body);
+        }
 
-        return response;
+        log.warn("Weather API error for '{}': status {}", subject, status);
+        return new WeatherApiException(message, status, body, retryAfterMillis);
     }
 
-    private JsonObject getAsObjectSafe(JsonObject parent, String key) {
-        if (parent == null || !parent.has(key) || !parent.get(key).isJsonObject()) {
-            return new JsonObject();
+    private void closeQuietly(WeatherHttpResponse response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            log.debug("Failed to close weather API response", e);
         }
-        return parent.getAsJsonObject(key);
     }
 
-    private String getAsStringSafe(JsonObject obj, String key) {
-        if (obj == null || !obj.has(key) || obj.get(key).isJsonNull()) {
-            return null;
+    private static boolean isConditional(WeatherHttpRequest request) {
+        Map<String, String> headers = request.getHeaders();
+        return headers.containsKey("If-None-Match") || headers.containsKey("If-Modified-Since");
+    }
+
+    /**
+     * Unwraps a gzip-encoded body; the encoding is only ever negotiated when compression is enabled.
+     */
+    private static InputStream decode(WeatherHttpResponse response, InputStream body) throws IOException {
+        if (body == null || !"gzip".equalsIgnoreCase(response.getHeader("Content-Encoding"))) {
+            return body;
         }
-        JsonElement el = obj.get(key);
-        return el.isJsonNull() ? null : el.getAsString();
+        return new GZIPInputStream(body, 1024);
     }
 
-    private double getAsDoubleSafe(JsonObject obj, String key) {
-        if (obj == null || !obj.has(key) || obj.get(key).isJsonNull()) {
-            return 0.0;
+    private String readStream(InputStream stream) throws IOException {
+        if (stream == null) {
+            return "";
+        }
+        try (ReadBuffers buffers = ReadBuffers.acquire()) {
+            return buffers.read(stream).string();
         }
-        return obj.get(key).getAsDouble();
     }
 
-    private int getAsIntSafe(JsonObject obj, String key) {
-        if (obj == null || !obj.has(key) || obj.get(key).isJsonNull()) {
-            return 0;
+    private String extractErrorMessage(String json) {
+        try {
+            JsonObject obj = JsonParser.parseString(json).getAsJsonObject();
+            if (obj.has("message") && !obj.get("message").isJsonNull()) {
+                return obj.get("message").getAsString();
+            }
+        } catch (Exception ignored) {
+            log.debug("Failed to extract error message from API response");
         }
-        return obj.get(key).getAsInt();
+        return null;
     }
 
-    private long getAsLongSafe(JsonObject obj, String key) {
-        if (obj == null || !obj.has(key) || obj.get(key).isJsonNull()) {
-            return 0L;
+    private static String urlEncode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported", e);
         }
-        return obj.get(key).getAsLong();
     }
 
-    private String normalizeCityKey(String city) {
-        return city.trim().toLowerCase(Locale.ROOT);
+    /**
+     * Parses a single-city body. With the validators of the cached entry, a 304 or a body that hashes the same
+     * as the cached one yields a {@link Fetched} without a response instead of being parsed again.
+     */
+    private BodyParser<Fetched> singleParser(final CacheValidators previous) {
+        return new BodyParser<Fetched>() {
+            @Override
+            public Fetched parse(WeatherHttpResponse response, InputStream body) throws IOException {
+                if (previous != null && response.getStatusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    return new Fetched(null, previous);
+                }
+                try (ReadBuffers buffers = ReadBuffers.acquire()) {
+                    buffers.read(body);
+                    long hash = CacheValidators.hash(buffers.crc32(), buffers.length());
+                    CacheValidators validators = CacheValidators.of(response, hash);
+                    if (previous != null && previous.getBodyHash() == hash) {
+                        return new Fetched(null, validators);
+                    }
+                    return new Fetched(parser.parse(buffers.reader()), validators);
+                }
+            }
+        };
     }
 
-    private static final class HttpResult {
-        private final int statusCode;
-        private final String body;
+    private interface BodyParser<T> {
+        T parse(WeatherHttpResponse response, InputStream body) throws IOException;
+    }
+
+    /**
+     * A single-city response and the validators of the body it came from. {@code response} is null
+     * when the API reported no change.
+     */
+    private static final class Fetched {
+
+        private final WeatherResponse response;
+        private final CacheValidators validators;
 
-        private HttpResult(int statusCode, String body) {
-            this.statusCode = statusCode;
-            this.body = body;
+        private Fetched(WeatherResponse response, CacheValidators validators) {
+            this.response = response;
+            this.validators = validators;
         }
     }
-}
\ No newline at end of file
+}
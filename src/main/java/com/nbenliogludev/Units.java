@@ -0,0 +1,28 @@
+package com.nbenliogludev;
+
+/**
+ * Units the API reports temperatures and wind speed in.
+ *
+ * @author nbenliogludev
+ */
+public enum Units {
+    /** Kelvin and m/s, the API default. */
+    STANDARD(null),
+    /** Celsius and m/s. */
+    METRIC("metric"),
+    /** Fahrenheit and miles/hour. */
+    IMPERIAL("imperial");
+
+    private final String parameter;
+
+    Units(String parameter) {
+        this.parameter = parameter;
+    }
+
+    /**
+     * Value of the {@code units} query parameter, or null to leave it out.
+     */
+    String parameter() {
+        return parameter;
+    }
+}
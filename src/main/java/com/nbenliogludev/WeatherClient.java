@@ -1,16 +1,143 @@
 package com.nbenliogludev;
 
 import com.nbenliogludev.exception.WeatherSdkException;
+import com.nbenliogludev.model.WeatherHistory;
 import com.nbenliogludev.model.WeatherResponse;
+import com.nbenliogludev.subscription.ChangeThresholds;
+import com.nbenliogludev.subscription.WeatherListener;
+import com.nbenliogludev.subscription.WeatherSubscription;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
+ * Methods added after the first release have default implementations, so existing implementations of this
+ * interface keep compiling: they either delegate to {@link #getCurrentWeather(String)} and
+ * {@link #getCurrentWeatherJson(String)} or throw a {@link WeatherSdkException} saying the operation is not
+ * supported. {@link WeatherClients} always returns a client that implements all of them.
+ *
  * @author nbenliogludev
  */
 public interface WeatherClient {
 
     WeatherResponse getCurrentWeather(String city) throws WeatherSdkException;
 
+    /**
+     * Weather at the given coordinates. Points in the same grid cell (see
+     * {@link WeatherClientBuilder#geoCellSize(double)}) share one cached response, as do lookups by
+     * name or ID that resolve to the same city.
+     */
+    default WeatherResponse getCurrentWeather(double lat, double lon) throws WeatherSdkException {
+        throw new WeatherSdkException("Coordinate lookups are not supported by this client");
+    }
+
+    /**
+     * Weather for an OpenWeather city ID, sharing the cache entry with lookups of the same city by name or coordinates.
+     */
+    default WeatherResponse getCurrentWeatherById(long cityId) throws WeatherSdkException {
+        throw new WeatherSdkException("City ID lookups are not supported by this client");
+    }
+
+    /**
+     * Non-blocking variant of {@link #getCurrentWeather(String)}. A fresh cache entry completes the
+     * stage immediately on the calling thread; a miss is fetched on the client's executor.
+     * Failures complete the stage exceptionally with a {@link WeatherSdkException}.
+     */
+    default CompletionStage<WeatherResponse> getCurrentWeatherAsync(String city) {
+        CompletableFuture<WeatherResponse> future = new CompletableFuture<WeatherResponse>();
+        try {
+            future.complete(getCurrentWeather(city));
+        } catch (WeatherSdkException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Looks up several cities at once. Cache hits are answered immediately and misses are fetched
+     * in parallel, so the call takes about as long as the slowest single fetch.
+     *
+     * @return one result per distinct city, in iteration order, keyed by the city string as passed in
+     */
+    default Map<String, WeatherResult> getCurrentWeather(Collection<String> cities) throws WeatherSdkException {
+        if (cities == null) {
+            throw new WeatherSdkException("Cities must not be null");
+        }
+        Map<String, WeatherResult> results = new LinkedHashMap<String, WeatherResult>();
+        for (String city : cities) {
+            if (results.containsKey(city)) {
+                continue;
+            }
+            try {
+                results.put(city, WeatherResult.success(getCurrentWeather(city)));
+            } catch (WeatherSdkException e) {
+                results.put(city, WeatherResult.failure(e));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The weather as the SDK's normalized JSON. The JSON is serialized once per cached response,
+     * so repeated calls for a cached city cost no serialization.
+     */
     String getCurrentWeatherJson(String city) throws WeatherSdkException;
 
+    /**
+     * Writes {@link #getCurrentWeatherJson(String)} to {@code out} as UTF-8 without building an intermediate copy.
+     *
+     * @throws IOException if writing to {@code out} fails
+     */
+    default void writeCurrentWeatherJson(String city, OutputStream out) throws WeatherSdkException, IOException {
+        out.write(getCurrentWeatherJson(city).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends {@link #getCurrentWeatherJson(String)} to {@code out}, e.g. a {@link java.io.Writer}.
+     *
+     * @throws IOException if appending to {@code out} fails
+     */
+    default void appendCurrentWeatherJson(String city, Appendable out) throws WeatherSdkException, IOException {
+        out.append(getCurrentWeatherJson(city));
+    }
+
+    /**
+     * {@link #subscribe(String, ChangeThresholds, WeatherListener)} with {@link ChangeThresholds#DEFAULT}.
+     */
+    default WeatherSubscription subscribe(String city, WeatherListener listener) throws WeatherSdkException {
+        return subscribe(city, ChangeThresholds.DEFAULT, listener);
+    }
+
+    /**
+     * Notifies {@code listener} whenever polling finds that the city's condition changed, or its temperature or
+     * wind speed moved by at least the thresholds since the last notification. The city is fetched now if it is
+     * not cached, and then refreshed every polling cycle while the subscription is active. Listeners run on a
+     * notification thread of the client, never on the polling threads.
+     *
+     * @throws WeatherSdkException if the client is not in POLLING mode or the city cannot be fetched
+     */
+    default WeatherSubscription subscribe(String city, ChangeThresholds thresholds, WeatherListener listener)
+            throws WeatherSdkException {
+        throw new WeatherSdkException("Subscriptions are not supported by this client");
+    }
+
+    /**
+     * Observations of a city recorded between two times, both inclusive and in Unix seconds like
+     * {@link WeatherResponse#getDatetime()}. Only answered from what the client has already fetched; it never
+     * calls the API. Empty for a city that has not been fetched.
+     *
+     * @throws WeatherSdkException if history is not enabled, see {@link WeatherClientBuilder#history(int)}
+     */
+    default WeatherHistory getHistory(String city, long fromEpochSecond, long toEpochSecond)
+            throws WeatherSdkException {
+        throw new WeatherSdkException("History is not supported by this client");
+    }
+
     void shutdown();
 }
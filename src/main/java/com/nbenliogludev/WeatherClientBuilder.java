@@ -0,0 +1,442 @@
+package com.nbenliogludev;
+
+import com.nbenliogludev.exception.WeatherSdkException;
+import com.nbenliogludev.metrics.NoopWeatherMetrics;
+import com.nbenliogludev.metrics.WeatherMetrics;
+import com.nbenliogludev.transport.WeatherTransport;
+
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fluent configuration for a {@link WeatherClient}. Obtain one through {@link WeatherClients#builder(String)}.
+ *
+ * @author nbenliogludev
+ */
+public final class WeatherClientBuilder {
+
+    static final String DEFAULT_BASE_URL = "https://api.openweathermap.org/data/2.5";
+    static final int DEFAULT_CACHE_CAPACITY = 10;
+    static final long DEFAULT_CACHE_TTL_MILLIS = 10 * 60 * 1000L;
+    static final long DEFAULT_POLLING_INTERVAL_MILLIS = 5 * 60 * 1000L;
+    static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000L;
+    static final long DEFAULT_READ_TIMEOUT_MILLIS = 5000L;
+    static final int DEFAULT_BATCH_CONCURRENCY = 8;
+    static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 16;
+    static final int DEFAULT_POLLING_CONCURRENCY = 4;
+    static final int DEFAULT_POLLING_CALLS_PER_MINUTE = 60;
+    static final double DEFAULT_GEO_CELL_DEGREES = 0.05;
+    static final int DEFAULT_MAX_RETRIES = 2;
+    static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 200L;
+    static final int DEFAULT_CIRCUIT_FAILURE_THRESHOLD = 5;
+    static final long DEFAULT_CIRCUIT_OPEN_MILLIS = 30 * 1000L;
+    static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 32;
+
+    final String apiKey;
+    Mode mode = Mode.ON_DEMAND;
+    Units units = Units.STANDARD;
+    boolean sharedCache;
+    int cacheCapacity = DEFAULT_CACHE_CAPACITY;
+    long cacheTtlMillis = DEFAULT_CACHE_TTL_MILLIS;
+    long maxStaleMillis;
+    long refreshAheadMillis;
+    long staleIfErrorMillis;
+    long groupWindowMillis;
+    long adaptiveIdleMillis;
+    long pollingIntervalMillis = DEFAULT_POLLING_INTERVAL_MILLIS;
+    int pollingConcurrency = DEFAULT_POLLING_CONCURRENCY;
+    int pollingCallsPerMinute = DEFAULT_POLLING_CALLS_PER_MINUTE;
+    long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    long readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+    ScheduledExecutorService scheduler;
+    Executor executor;
+    boolean virtualThreads;
+    int batchConcurrency = DEFAULT_BATCH_CONCURRENCY;
+    String baseUrl = DEFAULT_BASE_URL;
+    WeatherTransport transport;
+    int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+    boolean compression = true;
+    int maxRetries = DEFAULT_MAX_RETRIES;
+    long initialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+    int circuitFailureThreshold = DEFAULT_CIRCUIT_FAILURE_THRESHOLD;
+    long circuitOpenMillis = DEFAULT_CIRCUIT_OPEN_MILLIS;
+    int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+    WeatherMetrics metrics = NoopWeatherMetrics.INSTANCE;
+    Path diskCacheFile;
+    boolean compactCacheStorage;
+    int historyCapacity;
+    double geoCellDegrees = DEFAULT_GEO_CELL_DEGREES;
+
+    WeatherClientBuilder(String apiKey) {
+        this.apiKey = apiKey;
+    }
+
+    public WeatherClientBuilder mode(Mode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * Maximum number of cities kept in the cache before the least recently used one is evicted.
+     */
+    public WeatherClientBuilder cacheCapacity(int cacheCapacity) {
+        this.cacheCapacity = cacheCapacity;
+        return this;
+    }
+
+    /**
+     * How long a cached response is considered fresh.
+     */
+    public WeatherClientBuilder cacheTtl(long duration, TimeUnit unit) {
+        this.cacheTtlMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    /**
+     * Keeps serving an expired response for up to {@code maxStale} past the TTL while it is refreshed in
+     * the background, instead of making the caller wait for the API. Once {@code maxStale} has also passed
+     * the entry is dropped and the next call fetches synchronously. Disabled by default.
+     */
+    public WeatherClientBuilder staleWhileRevalidate(long maxStale, TimeUnit unit) {
+        this.maxStaleMillis = unit.toMillis(maxStale);
+        return this;
+    }
+
+    /**
+     * Reloads an entry in the background when it is read during the last {@code window} of its TTL, so
+     * frequently requested cities are renewed before they expire. Must be shorter than the TTL. Disabled by default.
+     */
+    public WeatherClientBuilder refreshAhead(long window, TimeUnit unit) {
+        this.refreshAheadMillis = unit.toMillis(window);
+        return this;
+    }
+
+    /**
+     * Answers a cache miss with the last known response, up to {@code maxStale} past its TTL, when the API
+     * cannot be reached: network errors, 5xx and 429 after retries, or an open circuit breaker.
+     * Disabled by default, in which case the error is thrown.
+     */
+    public WeatherClientBuilder staleIfError(long maxStale, TimeUnit unit) {
+        this.staleIfErrorMillis = unit.toMillis(maxStale);
+        return this;
+    }
+
+    /**
+     * Stores cached responses as flat records of primitive fields with shared condition strings instead of
+     * object graphs, cutting the heap used per city by about 40%. Every read then returns a newly built
+     * {@link com.nbenliogludev.model.WeatherResponse}, so enable it for large caches rather than hot small ones.
+     */
+    public WeatherClientBuilder compactCacheStorage(boolean compactCacheStorage) {
+        this.compactCacheStorage = compactCacheStorage;
+        return this;
+    }
+
+    /**
+     * Units of temperatures and wind speed in responses. Defaults to {@link Units#STANDARD}, the API default.
+     */
+    public WeatherClientBuilder units(Units units) {
+        this.units = units;
+        return this;
+    }
+
+    /**
+     * Answers cache misses from a cache shared with the other clients that enable it, see
+     * {@link WeatherClients#sharedCache(int, int, long, java.util.concurrent.TimeUnit)}. A location requested by
+     * several API keys is then fetched once per shared TTL, by the key that asks first. The client still keeps its
+     * own cache, which references the shared responses rather than copying them. Disabled by default.
+     */
+    public WeatherClientBuilder sharedCache(boolean sharedCache) {
+        this.sharedCache = sharedCache;
+        return this;
+    }
+
+    /**
+     * Keeps the last {@code observationsPerCity} observations of each cached city (time, temperature, feels-like
+     * and wind speed, 16 bytes each) for {@link WeatherClient#getHistory(String, long, long)}. Every fetched
+     * response with a new observation time is recorded, so in POLLING mode the history fills on its own.
+     * Disabled by default.
+     */
+    public WeatherClientBuilder history(int observationsPerCity) {
+        this.historyCapacity = observationsPerCity;
+        return this;
+    }
+
+    /**
+     * Size in degrees of the grid cells coordinate lookups are cached by. Requests for points in the same cell
+     * share one upstream call; the default of 0.05 is roughly 5 km north-south.
+     */
+    public WeatherClientBuilder geoCellSize(double degrees) {
+        this.geoCellDegrees = degrees;
+        return this;
+    }
+
+    /**
+     * Keeps a copy of fetched responses in a memory-mapped file so that a restarted client can answer from it
+     * instead of calling the API for every city. The file is created if missing and must not be shared by
+     * two running clients. Disabled by default.
+     */
+    public WeatherClientBuilder diskCache(Path file) {
+        this.diskCacheFile = file;
+        return this;
+    }
+
+    /**
+     * Sends lookups and refreshes by city ID through the group endpoint, which answers up to 20 cities per call.
+     * Requests arriving within {@code window} of each other are sent together; a full group is sent at once.
+     * Cached cities are stored under their ID, so in {@link Mode#POLLING} this cuts upstream calls by up to 20x.
+     * Disabled by default.
+     */
+    public WeatherClientBuilder groupRequests(long window, TimeUnit unit) {
+        this.groupWindowMillis = unit.toMillis(window);
+        return this;
+    }
+
+    /**
+     * Period between background refreshes in {@link Mode#POLLING}.
+     */
+    public WeatherClientBuilder pollingInterval(long duration, TimeUnit unit) {
+        this.pollingIntervalMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    /**
+     * Lets read traffic decide how often {@link Mode#POLLING} refreshes each city: cities read about once per
+     * polling interval or more are refreshed every interval, rarely read ones only every few intervals, and
+     * cities not read for {@code idleTimeout} are no longer refreshed and simply expire. Disabled by default,
+     * in which case every cached city is refreshed every interval.
+     */
+    public WeatherClientBuilder adaptivePolling(long idleTimeout, TimeUnit unit) {
+        this.adaptiveIdleMillis = unit.toMillis(idleTimeout);
+        return this;
+    }
+
+    /**
+     * Maximum number of refreshes a polling cycle runs in parallel.
+     */
+    public WeatherClientBuilder pollingConcurrency(int pollingConcurrency) {
+        this.pollingConcurrency = pollingConcurrency;
+        return this;
+    }
+
+    /**
+     * Upper bound on upstream calls per minute made by polling; set it to what your OpenWeather plan allows.
+     * Defaults to 60, the free plan limit. Refreshes are spread evenly over the polling interval and a cycle
+     * is stretched rather than exceeding this rate.
+     */
+    public WeatherClientBuilder pollingRateLimit(int callsPerMinute) {
+        this.pollingCallsPerMinute = callsPerMinute;
+        return this;
+    }
+
+    public WeatherClientBuilder connectTimeout(long duration, TimeUnit unit) {
+        this.connectTimeoutMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    public WeatherClientBuilder readTimeout(long duration, TimeUnit unit) {
+        this.readTimeoutMillis = unit.toMillis(duration);
+        return this;
+    }
+
+    /**
+     * Scheduler used for polling instead of the threads all clients share (see
+     * {@link WeatherClients#sharedWorkerThreads(int)}); refreshes then run on the {@link #executor(Executor) executor}.
+     * The client cancels its own tasks on shutdown but never shuts the scheduler down.
+     */
+    public WeatherClientBuilder scheduler(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    /**
+     * Executor that runs upstream fetches for {@link WeatherClient#getCurrentWeatherAsync(String)}.
+     * Defaults to a client-owned cached pool of daemon threads; an executor passed here is never shut down.
+     */
+    public WeatherClientBuilder executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Runs asynchronous fetches, batch lookups and polling refreshes on virtual threads when the JDK has them
+     * (21 and later), so that thousands of blocking API calls can wait at once without a platform thread each.
+     * On older JDKs the default pools are used. Ignored when an {@link #executor(Executor) executor} is set.
+     * Raise {@link #maxConcurrentRequests(int)} and {@link #maxConnectionsPerHost(int)} to make use of it.
+     */
+    public WeatherClientBuilder virtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    /**
+     * Maximum number of upstream fetches a single batch lookup runs in parallel.
+     */
+    public WeatherClientBuilder batchConcurrency(int batchConcurrency) {
+        this.batchConcurrency = batchConcurrency;
+        return this;
+    }
+
+    /**
+     * Root of the OpenWeather API, e.g. {@code https://api.openweathermap.org/data/2.5}.
+     * Tests point this at a local stub server.
+     */
+    public WeatherClientBuilder baseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+        return this;
+    }
+
+    /**
+     * HTTP transport to use instead of the default pooled {@code HttpURLConnection} transport.
+     * The client never closes a transport passed here; timeouts and connection limits set on
+     * this builder only apply to the default transport.
+     */
+    public WeatherClientBuilder transport(WeatherTransport transport) {
+        this.transport = transport;
+        return this;
+    }
+
+    /**
+     * Maximum number of connections the default transport keeps open to one host at the same time.
+     */
+    public WeatherClientBuilder maxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        return this;
+    }
+
+    /**
+     * Asks the API for gzip-compressed responses and decodes them. Enabled by default; turn it off for
+     * a transport or proxy that already decompresses bodies.
+     */
+    public WeatherClientBuilder compression(boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    /**
+     * How often a failed API call is retried, and the delay before the first retry. Only network errors and
+     * 5xx responses are retried; the delay doubles on each retry and is randomized so that clients do not
+     * retry in lockstep. A 429 is retried only after the delay of its {@code Retry-After} header.
+     * Defaults to 2 retries starting at 200 ms; use 0 retries to disable.
+     */
+    public WeatherClientBuilder retries(int maxRetries, long initialBackoff, TimeUnit unit) {
+        this.maxRetries = maxRetries;
+        this.initialBackoffMillis = unit.toMillis(initialBackoff);
+        return this;
+    }
+
+    /**
+     * After {@code failureThreshold} consecutive failed calls, stops calling the API for {@code openDuration}
+     * and fails with {@link com.nbenliogludev.exception.WeatherUnavailableException} at once, or serves
+     * {@link #staleIfError stale data}. Defaults to 5 failures and 30 seconds.
+     */
+    public WeatherClientBuilder circuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+        this.circuitFailureThreshold = failureThreshold;
+        this.circuitOpenMillis = unit.toMillis(openDuration);
+        return this;
+    }
+
+    /**
+     * Maximum number of API calls in flight at once; a call waiting to retry does not hold one. Further calls
+     * fail with {@link com.nbenliogludev.exception.WeatherUnavailableException} instead of queueing. Defaults to 32.
+     */
+    public WeatherClientBuilder maxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        return this;
+    }
+
+    /**
+     * Destination for cache, upstream, parsing and polling measurements, e.g. a
+     * {@link com.nbenliogludev.metrics.MicrometerWeatherMetrics}. Nothing is recorded by default.
+     */
+    public WeatherClientBuilder metrics(WeatherMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Validates the configuration, creates the client and registers it in {@link WeatherClients}.
+     */
+    public WeatherClient build() throws WeatherSdkException {
+        validate();
+        return WeatherClients.register(apiKey, new DefaultWeatherClient(this));
+    }
+
+    void validate() throws WeatherSdkException {
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            throw new WeatherSdkException("API key must not be null or empty");
+        }
+        if (mode == null) {
+            throw new WeatherSdkException("Mode must not be null");
+        }
+        if (cacheCapacity <= 0) {
+            throw new WeatherSdkException("Cache capacity must be positive");
+        }
+        if (cacheTtlMillis <= 0) {
+            throw new WeatherSdkException("Cache TTL must be positive");
+        }
+        if (maxStaleMillis < 0) {
+            throw new WeatherSdkException("Max stale must not be negative");
+        }
+        if (refreshAheadMillis < 0 || refreshAheadMillis >= cacheTtlMillis) {
+            throw new WeatherSdkException("Refresh-ahead window must be shorter than the cache TTL");
+        }
+        if (staleIfErrorMillis < 0) {
+            throw new WeatherSdkException("Stale-if-error bound must not be negative");
+        }
+        if (maxRetries < 0 || initialBackoffMillis < 0) {
+            throw new WeatherSdkException("Retries and backoff must not be negative");
+        }
+        if (circuitFailureThreshold <= 0 || circuitOpenMillis <= 0) {
+            throw new WeatherSdkException("Circuit breaker threshold and open duration must be positive");
+        }
+        if (maxConcurrentRequests <= 0) {
+            throw new WeatherSdkException("Max concurrent requests must be positive");
+        }
+        if (groupWindowMillis < 0) {
+            throw new WeatherSdkException("Group request window must not be negative");
+        }
+        if (pollingIntervalMillis <= 0) {
+            throw new WeatherSdkException("Polling interval must be positive");
+        }
+        if (adaptiveIdleMillis < 0) {
+            throw new WeatherSdkException("Adaptive polling idle timeout must not be negative");
+        }
+        if (pollingConcurrency <= 0) {
+            throw new WeatherSdkException("Polling concurrency must be positive");
+        }
+        if (pollingCallsPerMinute <= 0) {
+            throw new WeatherSdkException("Polling rate limit must be positive");
+        }
+        if (batchConcurrency <= 0) {
+            throw new WeatherSdkException("Batch concurrency must be positive");
+        }
+        if (metrics == null) {
+            throw new WeatherSdkException("Metrics must not be null");
+        }
+        if (units == null) {
+            throw new WeatherSdkException("Units must not be null");
+        }
+        if (historyCapacity < 0) {
+            throw new WeatherSdkException("History capacity must not be negative");
+        }
+        if (!(geoCellDegrees > 0 && geoCellDegrees <= 1)) {
+            throw new WeatherSdkException("Geo cell size must be between 0 and 1 degree");
+        }
+        if (baseUrl == null || baseUrl.trim().isEmpty()) {
+            throw new WeatherSdkException("Base URL must not be null or empty");
+        }
+        if (maxConnectionsPerHost <= 0) {
+            throw new WeatherSdkException("Max connections per host must be positive");
+        }
+        checkTimeout("Connect timeout", connectTimeoutMillis);
+        checkTimeout("Read timeout", readTimeoutMillis);
+    }
+
+    private static void checkTimeout(String name, long millis) throws WeatherSdkException {
+        if (millis <= 0 || millis > Integer.MAX_VALUE) {
+            throw new WeatherSdkException(name + " must be between 1 and " + Integer.MAX_VALUE + " ms");
+        }
+    }
+}
@@ -1,29 +1,126 @@
 package com.nbenliogludev;
 
 import com.nbenliogludev.exception.WeatherSdkException;
+import com.nbenliogludev.internal.SharedRuntime;
+import com.nbenliogludev.internal.SharedWeatherCache;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author nbenliogludev
  */
 public final class WeatherClients {
 
+    static final int DEFAULT_SHARED_WORKER_THREADS = 4;
+    static final int DEFAULT_SHARED_CACHE_CAPACITY = 10_000;
+    static final int DEFAULT_SHARED_CACHE_ENTRIES_PER_TENANT = 1_000;
+    static final long DEFAULT_SHARED_CACHE_TTL_MILLIS = 10 * 60 * 1000L;
+
     private static final Map<String, WeatherClient> CLIENTS = new ConcurrentHashMap<>();
 
+    private static SharedRuntime runtime;
+    private static int runtimeUsers;
+    private static int sharedWorkerThreads = DEFAULT_SHARED_WORKER_THREADS;
+
+    private static SharedWeatherCache sharedCache;
+    private static int sharedCacheUsers;
+    private static int sharedCacheCapacity = DEFAULT_SHARED_CACHE_CAPACITY;
+    private static int sharedCacheEntriesPerTenant = DEFAULT_SHARED_CACHE_ENTRIES_PER_TENANT;
+    private static long sharedCacheTtlMillis = DEFAULT_SHARED_CACHE_TTL_MILLIS;
+
     private WeatherClients() {}
 
-    public static WeatherClient create(String apiKey, Mode mode) throws WeatherSdkException {
-        if (apiKey == null || apiKey.trim().isEmpty()) {
-            throw new WeatherSdkException("API key must not be null or empty");
+    /**
+     * Number of threads shared by all clients for polling and background refreshes. Takes effect
+     * when the shared threads are next started, i.e. when no client that uses them is running.
+     */
+    public static synchronized void sharedWorkerThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Shared worker threads must be positive");
+        }
+        sharedWorkerThreads = threads;
+    }
+
+    /**
+     * Returns the shared scheduler and workers, starting them for the first client that needs them.
+     * Every call must be matched by {@link #releaseRuntime()}.
+     */
+    static synchronized SharedRuntime acquireRuntime() {
+        if (runtime == null) {
+            runtime = new SharedRuntime(sharedWorkerThreads);
         }
-        if (mode == null) {
-            throw new WeatherSdkException("Mode must not be null");
+        runtimeUsers++;
+        return runtime;
+    }
+
+    /**
+     * Stops the shared threads once the last client using them has shut down.
+     */
+    static synchronized void releaseRuntime() {
+        if (--runtimeUsers == 0) {
+            runtime.shutdown();
+            runtime = null;
         }
+    }
 
-        WeatherClient newClient = new DefaultWeatherClient(apiKey, mode);
+    static synchronized int runtimeUserCount() {
+        return runtimeUsers;
+    }
+
+    /**
+     * Sizes the cache shared by clients built with {@link WeatherClientBuilder#sharedCache(boolean)}: at most
+     * {@code capacity} locations in total, at most {@code entriesPerTenant} of them added by one API key, each
+     * shared for {@code ttl}. Takes effect when the shared cache is next created, i.e. when no client uses it.
+     */
+    public static synchronized void sharedCache(int capacity, int entriesPerTenant, long ttl, TimeUnit unit) {
+        if (capacity <= 0 || entriesPerTenant <= 0 || ttl <= 0) {
+            throw new IllegalArgumentException("Shared cache capacity, tenant limit and TTL must be positive");
+        }
+        sharedCacheCapacity = capacity;
+        sharedCacheEntriesPerTenant = entriesPerTenant;
+        sharedCacheTtlMillis = unit.toMillis(ttl);
+    }
+
+    /**
+     * Upstream calls made with {@code apiKey} whose responses went to the shared cache since it was created.
+     */
+    public static synchronized long sharedCacheUpstreamCalls(String apiKey) {
+        return sharedCache == null ? 0L : sharedCache.getUpstreamCalls(apiKey);
+    }
+
+    /**
+     * Returns the shared cache, creating it for the first client that uses it. Every call must be matched by
+     * {@link #releaseSharedCache()}.
+     */
+    static synchronized SharedWeatherCache acquireSharedCache() {
+        if (sharedCache == null) {
+            sharedCache = new SharedWeatherCache(sharedCacheCapacity, sharedCacheEntriesPerTenant,
+                    sharedCacheTtlMillis);
+        }
+        sharedCacheUsers++;
+        return sharedCache;
+    }
+
+    /**
+     * Drops the shared cache once the last client using it has shut down.
+     */
+    static synchronized void releaseSharedCache() {
+        if (--sharedCacheUsers == 0) {
+            sharedCache = null;
+        }
+    }
+
+    public static WeatherClient create(String apiKey, Mode mode) throws WeatherSdkException {
+        return builder(apiKey).mode(mode).build();
+    }
+
+    public static WeatherClientBuilder builder(String apiKey) {
+        return new WeatherClientBuilder(apiKey);
+    }
 
+    static WeatherClient register(String apiKey, WeatherClient newClient) throws WeatherSdkException {
         WeatherClient existing = CLIENTS.putIfAbsent(apiKey, newClient);
         if (existing != null) {
             newClient.shutdown();
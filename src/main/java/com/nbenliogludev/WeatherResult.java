@@ -0,0 +1,47 @@
+package com.nbenliogludev;
+
+import com.nbenliogludev.exception.WeatherSdkException;
+import com.nbenliogludev.model.WeatherResponse;
+
+/**
+ * Outcome of one city in a batch lookup: either a response or the exception that prevented it.
+ *
+ * @author nbenliogludev
+ */
+public final class WeatherResult {
+
+    private final WeatherResponse response;
+    private final WeatherSdkException exception;
+
+    private WeatherResult(WeatherResponse response, WeatherSdkException exception) {
+        this.response = response;
+        this.exception = exception;
+    }
+
+    public static WeatherResult success(WeatherResponse response) {
+        return new WeatherResult(response, null);
+    }
+
+    public static WeatherResult failure(WeatherSdkException exception) {
+        return new WeatherResult(null, exception);
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+
+    public WeatherResponse getResponse() {
+        return response;
+    }
+
+    public WeatherSdkException getException() {
+        return exception;
+    }
+
+    public WeatherResponse getOrThrow() throws WeatherSdkException {
+        if (exception != null) {
+            throw exception;
+        }
+        return response;
+    }
+}
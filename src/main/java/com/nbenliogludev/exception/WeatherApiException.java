@@ -7,11 +7,20 @@ public class WeatherApiException extends WeatherSdkException {
 
     private final int statusCode;
     private final String errorBody;
+    private final long retryAfterMillis;
 
     public WeatherApiException(String message, int statusCode, String errorBody) {
+        this(message, statusCode, errorBody, -1L);
+    }
+
+    /**
+     * @param retryAfterMillis the wait the API asked for in a {@code Retry-After} header, or -1 if it did not
+     */
+    public WeatherApiException(String message, int statusCode, String errorBody, long retryAfterMillis) {
         super(message);
         this.statusCode = statusCode;
         this.errorBody = errorBody;
+        this.retryAfterMillis = retryAfterMillis;
     }
 
     public int getStatusCode() {
@@ -21,4 +30,11 @@ public class WeatherApiException extends WeatherSdkException {
     public String getErrorBody() {
         return errorBody;
     }
+
+    /**
+     * How long the API asked to wait before calling again, typically with a 429, or -1 if it did not say.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
 }
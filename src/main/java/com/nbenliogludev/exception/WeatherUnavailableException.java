@@ -0,0 +1,14 @@
+package com.nbenliogludev.exception;
+
+/**
+ * Thrown without calling the API when it is considered unhealthy (the circuit breaker is open)
+ * or when the client already has as many calls in flight as it allows.
+ *
+ * @author nbenliogludev
+ */
+public class WeatherUnavailableException extends WeatherSdkException {
+
+    public WeatherUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,114 @@
+package com.nbenliogludev.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which cached keys a polling cycle refreshes, based on how often and how recently they are read.
+ * <p>
+ * Reads only bump a per-key counter. Once per cycle {@link #selectDue} folds the counts into a score
+ * that halves every cycle, so it follows recent popularity. A key read about once per cycle or more
+ * is refreshed every cycle; colder keys are refreshed every few cycles, up to {@link #MAX_CYCLES_BETWEEN_REFRESHES}.
+ * Keys not read for longer than the idle timeout are not refreshed at all and are left to expire.
+ *
+ * @author nbenliogludev
+ */
+public class AccessTracker {
+
+    static final int MAX_CYCLES_BETWEEN_REFRESHES = 8;
+    // steady score of a key read once per cycle: 1 + 1/2 + 1/4 + ...
+    private static final double HOT_SCORE = 2.0;
+
+    private final long idleMillis;
+    private final ConcurrentHashMap<String, Stats> stats = new ConcurrentHashMap<String, Stats>();
+
+    public AccessTracker(long idleMillis) {
+        this.idleMillis = idleMillis;
+    }
+
+    public void record(String key) {
+        record(key, System.currentTimeMillis());
+    }
+
+    void record(String key, long nowMillis) {
+        Stats s = stats.get(key);
+        if (s == null) {
+            s = new Stats(nowMillis);
+            Stats existing = stats.putIfAbsent(key, s);
+            if (existing != null) {
+                s = existing;
+            }
+        }
+        s.reads.increment();
+        if (s.lastReadMillis != nowMillis) {
+            s.lastReadMillis = nowMillis;
+        }
+    }
+
+    /**
+     * Returns the keys to refresh in this cycle and forgets keys that are no longer cached.
+     * Called once per cycle, from one thread at a time.
+     */
+    public List<String> selectDue(Collection<String> cachedKeys) {
+        return selectDue(cachedKeys, System.currentTimeMillis());
+    }
+
+    List<String> selectDue(Collection<String> cachedKeys, long nowMillis) {
+        Set<String> cached = new HashSet<String>(cachedKeys);
+        stats.keySet().retainAll(cached);
+
+        List<String> due = new ArrayList<String>();
+        for (String key : cached) {
+            Stats s = stats.get(key);
+            if (s == null) {
+                // cached without a tracked read, e.g. restored from disk: treat as just requested
+                s = new Stats(nowMillis);
+                s.score = HOT_SCORE;
+                Stats existing = stats.putIfAbsent(key, s);
+                if (existing != null) {
+                    s = existing;
+                }
+            }
+            s.score = s.score / 2 + s.reads.sumThenReset();
+            s.cyclesSinceRefresh++;
+
+            if (nowMillis - s.lastReadMillis > idleMillis) {
+                continue;
+            }
+            if (s.cyclesSinceRefresh >= cyclesBetweenRefreshes(s.score)) {
+                s.cyclesSinceRefresh = 0;
+                due.add(key);
+            }
+        }
+        return due;
+    }
+
+    int size() {
+        return stats.size();
+    }
+
+    static int cyclesBetweenRefreshes(double score) {
+        if (score >= HOT_SCORE) {
+            return 1;
+        }
+        return (int) Math.min(MAX_CYCLES_BETWEEN_REFRESHES, Math.ceil(HOT_SCORE / Math.max(score, 0.01)));
+    }
+
+    private static final class Stats {
+
+        private final LongAdder reads = new LongAdder();
+        private volatile long lastReadMillis;
+        // only touched by the polling cycle
+        private double score;
+        private int cyclesSinceRefresh;
+
+        private Stats(long nowMillis) {
+            this.lastReadMillis = nowMillis;
+        }
+    }
+}
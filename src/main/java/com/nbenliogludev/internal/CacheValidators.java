@@ -0,0 +1,60 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.transport.WeatherHttpResponse;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * What is needed to tell whether the API has anything new for a cached entry: the HTTP validators the
+ * server sent, if any, and a hash of the body it was parsed from.
+ *
+ * @author nbenliogludev
+ */
+public final class CacheValidators {
+
+    private final String etag;
+    private final String lastModified;
+    private final long bodyHash;
+
+    public CacheValidators(String etag, String lastModified, long bodyHash) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.bodyHash = bodyHash;
+    }
+
+    public static CacheValidators of(WeatherHttpResponse response, long bodyHash) {
+        return new CacheValidators(response.getHeader("ETag"), response.getHeader("Last-Modified"), bodyHash);
+    }
+
+    /**
+     * Hash of a body: its CRC-32 in the low half and its length in the high half.
+     */
+    public static long hash(CRC32 crc, long length) {
+        return length << 32 | crc.getValue();
+    }
+
+    public long getBodyHash() {
+        return bodyHash;
+    }
+
+    /**
+     * {@code If-None-Match} and {@code If-Modified-Since} headers for a conditional request; empty if the
+     * server sent no validators.
+     */
+    public Map<String, String> conditionalHeaders() {
+        if (etag == null && lastModified == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        if (etag != null) {
+            headers.put("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            headers.put("If-Modified-Since", lastModified);
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,204 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.model.WeatherResponse;
+import com.nbenliogludev.subscription.ChangeThresholds;
+import com.nbenliogludev.subscription.WeatherChange;
+import com.nbenliogludev.subscription.WeatherListener;
+import com.nbenliogludev.subscription.WeatherSubscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Tells subscribers when the weather of a city changes by more than their thresholds.
+ * <p>
+ * {@link #publish} only compares and queues, so the thread that fetched the response is never held up by
+ * listeners. Queued changes are delivered in batches by one notification thread: a single task drains
+ * everything queued so far, and a subscription that changes again before its change was delivered
+ * keeps one change, from its last delivered response to the newest one.
+ *
+ * @author nbenliogludev
+ */
+public class ChangeNotifier {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeNotifier.class);
+
+    private final ConcurrentHashMap<String, CopyOnWriteArrayList<Subscription>> subscriptions =
+            new ConcurrentHashMap<String, CopyOnWriteArrayList<Subscription>>();
+
+    private final Object lock = new Object();
+    private Map<Subscription, WeatherResponse> pending = new LinkedHashMap<Subscription, WeatherResponse>();
+    private boolean flushScheduled;
+    private ExecutorService deliveryThread;
+    private boolean closed;
+
+    /**
+     * Subscribes to changes of the entry cached under {@code key}, starting from {@code current}.
+     */
+    public WeatherSubscription subscribe(String key, String city, ChangeThresholds thresholds,
+                                         WeatherListener listener, WeatherResponse current) {
+        Subscription subscription = new Subscription(key, city, thresholds, listener, current);
+        while (true) {
+            CopyOnWriteArrayList<Subscription> list = subscriptions.get(key);
+            if (list == null) {
+                CopyOnWriteArrayList<Subscription> created = new CopyOnWriteArrayList<Subscription>();
+                list = subscriptions.putIfAbsent(key, created);
+                if (list == null) {
+                    list = created;
+                }
+            }
+            list.add(subscription);
+            // the last subscriber of the key may have removed the list meanwhile
+            if (subscriptions.get(key) == list) {
+                return subscription;
+            }
+            list.remove(subscription);
+        }
+    }
+
+    /**
+     * Keys with at least one subscriber; polling keeps refreshing them even if nobody reads them.
+     */
+    public Set<String> keys() {
+        return subscriptions.keySet();
+    }
+
+    public void publish(String key, WeatherResponse response) {
+        List<Subscription> list = subscriptions.get(key);
+        if (list == null) {
+            return;
+        }
+        boolean schedule = false;
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            for (Subscription subscription : list) {
+                if (subscription.thresholds.isChange(subscription.lastDelivered, response)) {
+                    pending.put(subscription, response);
+                }
+            }
+            if (!pending.isEmpty() && !flushScheduled) {
+                flushScheduled = true;
+                schedule = true;
+            }
+        }
+        if (schedule) {
+            scheduleFlush();
+        }
+    }
+
+    public void close() {
+        ExecutorService thread;
+        synchronized (lock) {
+            closed = true;
+            pending.clear();
+            thread = deliveryThread;
+        }
+        if (thread != null) {
+            thread.shutdownNow();
+        }
+    }
+
+    private void scheduleFlush() {
+        ExecutorService thread = deliveryThread();
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Change notification rejected, notifier is closed", e);
+        }
+    }
+
+    private ExecutorService deliveryThread() {
+        synchronized (lock) {
+            if (closed) {
+                return null;
+            }
+            if (deliveryThread == null) {
+                deliveryThread = Executors.newSingleThreadExecutor(new DaemonThreadFactory("weather-sdk-notifier"));
+            }
+            return deliveryThread;
+        }
+    }
+
+    private void flush() {
+        List<WeatherChange> changes;
+        List<Subscription> targets;
+        synchronized (lock) {
+            changes = new ArrayList<WeatherChange>(pending.size());
+            targets = new ArrayList<Subscription>(pending.size());
+            for (Map.Entry<Subscription, WeatherResponse> e : pending.entrySet()) {
+                Subscription subscription = e.getKey();
+                if (subscription.cancelled) {
+                    continue;
+                }
+                changes.add(new WeatherChange(subscription.city, subscription.lastDelivered, e.getValue()));
+                targets.add(subscription);
+                subscription.lastDelivered = e.getValue();
+            }
+            pending = new LinkedHashMap<Subscription, WeatherResponse>();
+            flushScheduled = false;
+        }
+        for (int i = 0; i < targets.size(); i++) {
+            try {
+                targets.get(i).listener.onChange(changes.get(i));
+            } catch (RuntimeException e) {
+                log.warn("Weather listener for '{}' failed", targets.get(i).city, e);
+            }
+        }
+    }
+
+    private void remove(Subscription subscription) {
+        subscription.cancelled = true;
+        CopyOnWriteArrayList<Subscription> list = subscriptions.get(subscription.key);
+        if (list != null) {
+            list.remove(subscription);
+            if (list.isEmpty()) {
+                subscriptions.remove(subscription.key, list);
+            }
+        }
+    }
+
+    private final class Subscription implements WeatherSubscription {
+
+        private final String key;
+        private final String city;
+        private final ChangeThresholds thresholds;
+        private final WeatherListener listener;
+        // guarded by lock
+        private WeatherResponse lastDelivered;
+        private volatile boolean cancelled;
+
+        private Subscription(String key, String city, ChangeThresholds thresholds, WeatherListener listener,
+                             WeatherResponse current) {
+            this.key = key;
+            this.city = city;
+            this.thresholds = thresholds;
+            this.listener = listener;
+            this.lastDelivered = current;
+        }
+
+        @Override
+        public void cancel() {
+            remove(this);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.nbenliogludev.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops calls to an unhealthy upstream for a while instead of letting every caller wait for its timeouts.
+ * <p>
+ * After {@code failureThreshold} consecutive failures the breaker opens and {@link #tryAcquire()} refuses
+ * calls. Once {@code openDuration} has passed, a single trial call is let through: its success closes the
+ * breaker, its failure opens it again for another period.
+ *
+ * @author nbenliogludev
+ */
+public class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openDurationMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+    }
+
+    /**
+     * Returns whether a call may go ahead. Every permitted call must be followed by
+     * {@link #onSuccess()} or {@link #onFailure()}.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAtNanos < openNanos) {
+                    return false;
+                }
+                log.info("Circuit half-open, sending a trial call to the weather API");
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Circuit closed, weather API calls resumed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            log.warn("Circuit opened after {} consecutive failures, failing fast for {} ms",
+                    consecutiveFailures, TimeUnit.NANOSECONDS.toMillis(openNanos));
+            state = State.OPEN;
+            openedAtNanos = System.nanoTime();
+            trialInFlight = false;
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+}
@@ -0,0 +1,74 @@
+package com.nbenliogludev.internal;
+
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Caps how many asynchronous operations run at once without blocking any thread.
+ * Submitted operations are started in FIFO order as soon as a running one completes.
+ *
+ * @author nbenliogludev
+ */
+public class ConcurrencyLimiter {
+
+    private final int maxConcurrency;
+    private final Queue<Supplier<? extends CompletionStage<?>>> queue =
+            new ConcurrentLinkedQueue<Supplier<? extends CompletionStage<?>>>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private final BiConsumer<Object, Throwable> onComplete = new BiConsumer<Object, Throwable>() {
+        @Override
+        public void accept(Object result, Throwable error) {
+            active.decrementAndGet();
+            drain();
+        }
+    };
+
+    public ConcurrencyLimiter(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Queues an operation; {@code starter} is invoked once a slot is free and must return the
+     * stage that completes when the operation is done. It must not throw.
+     */
+    public void submit(Supplier<? extends CompletionStage<?>> starter) {
+        queue.offer(starter);
+        drain();
+    }
+
+    public int activeCount() {
+        return active.get();
+    }
+
+    public int queuedCount() {
+        return queue.size();
+    }
+
+    // only one thread at a time runs the loop; completions that happen meanwhile just bump wip
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (active.get() < maxConcurrency) {
+                Supplier<? extends CompletionStage<?>> starter = queue.poll();
+                if (starter == null) {
+                    break;
+                }
+                active.incrementAndGet();
+                starter.get().whenComplete(onComplete);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
@@ -0,0 +1,517 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.model.CoordInfo;
+import com.nbenliogludev.model.SysInfo;
+import com.nbenliogludev.model.TemperatureInfo;
+import com.nbenliogludev.model.WeatherInfo;
+import com.nbenliogludev.model.WeatherResponse;
+import com.nbenliogludev.model.WindInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Second-level cache in a memory-mapped file, so a restarted client can serve the responses it
+ * fetched before the restart instead of calling the API for every city at once.
+ * <p>
+ * The file is a fixed-size hash table of {@value #SLOT_SIZE}-byte slots addressed by the
+ * normalized city key. A key lives in one of {@value #PROBE_LIMIT} consecutive slots; when all of
+ * them are taken by other keys the oldest one is overwritten. Slots are never cleared: a slot is marked
+ * as being written while its body changes, and a lookup skips such a slot but stops at the first empty
+ * one, so a write cut short by a crash loses only its own entry. Entries are read on demand and written
+ * back on a background thread, the latest value per key winning.
+ * <p>
+ * Besides responses, a slot can hold a link from an alias, such as a city name, to the key the response
+ * is stored under. {@link #get} follows one link, so a restarted client finds an entry by any key it was
+ * requested by even though refreshes only rewrite the primary key.
+ * <p>
+ * The store is best-effort: I/O failures are logged and treated as a miss.
+ *
+ * @author nbenliogludev
+ */
+public class DiskWeatherStore implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskWeatherStore.class);
+
+    private static final int MAGIC = 0x57534443; // "WSDC"
+    private static final int VERSION = 2;
+    static final int HEADER_SIZE = 16;
+    static final int SLOT_SIZE = 512;
+    static final int PROBE_LIMIT = 8;
+
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte LINK = 2;
+    static final byte WRITING = 3;
+
+    private static final int HAS_WEATHER = 1;
+    private static final int HAS_TEMPERATURE = 1 << 1;
+    private static final int HAS_WIND = 1 << 2;
+    private static final int HAS_SYS = 1 << 3;
+    private static final int HAS_COORD = 1 << 4;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private final int slotCount;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // positional view for writes; guarded by the write lock
+    private final ByteBuffer writeView;
+
+    private final ConcurrentHashMap<String, Pending> dirty = new ConcurrentHashMap<String, Pending>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ExecutorService writer =
+            Executors.newSingleThreadExecutor(new DaemonThreadFactory("weather-sdk-disk"));
+
+    private DiskWeatherStore(Path file, FileChannel channel, MappedByteBuffer mapped, int slotCount) {
+        this.file = file;
+        this.channel = channel;
+        this.mapped = mapped;
+        this.slotCount = slotCount;
+        this.writeView = mapped.duplicate();
+    }
+
+    /**
+     * Opens the store, creating the file if needed. An existing file with a valid header keeps its
+     * size, so changing {@code minSlots} between restarts does not discard the stored entries.
+     */
+    public static DiskWeatherStore open(Path file, int minSlots) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            int slotCount = readSlotCount(channel);
+            boolean fresh = slotCount <= 0;
+            if (fresh) {
+                slotCount = tableSize(minSlots);
+                channel.truncate(0);
+            }
+
+            long size = HEADER_SIZE + (long) slotCount * SLOT_SIZE;
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (fresh) {
+                mapped.putInt(0, MAGIC);
+                mapped.putInt(4, VERSION);
+                mapped.putInt(8, slotCount);
+                mapped.putInt(12, SLOT_SIZE);
+            }
+            log.debug("Opened disk cache {} with {} slots", file, slotCount);
+            return new DiskWeatherStore(file, channel, mapped, slotCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the stored entry for {@code key}, or the one it links to, or null if there is none or it
+     * cannot be read.
+     */
+    public Stored get(String key) {
+        return get(key, true);
+    }
+
+    private Stored get(String key, boolean followLink) {
+        Pending pending = dirty.get(key);
+        if (pending != null) {
+            if (pending.target == null) {
+                return new Stored(pending.response, pending.fetchedAtMillis);
+            }
+            return followLink ? get(pending.target, false) : null;
+        }
+
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] slot = new byte[SLOT_SIZE];
+        int home = home(keyBytes);
+        String target = null;
+
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < PROBE_LIMIT; i++) {
+                ByteBuffer view = mapped.duplicate();
+                view.position(slotOffset((home + i) % slotCount));
+                view.get(slot);
+                ByteBuffer record = ByteBuffer.wrap(slot);
+                byte state = record.get();
+                if (state == EMPTY) {
+                    return null;
+                }
+                if (state == WRITING) {
+                    continue;
+                }
+                if (keyMatches(record, keyBytes)) {
+                    if (state == USED) {
+                        return decode(record);
+                    }
+                    record.getLong();
+                    target = getString(record);
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to read disk cache entry for '{}' from {}", key, file, e);
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return target != null && followLink ? get(target, false) : null;
+    }
+
+    /**
+     * Queues {@code response} to be written; a later put for the same key replaces it if it has not been written yet.
+     */
+    public void putAsync(String key, WeatherResponse response, long fetchedAtMillis) {
+        queue(key, new Pending(response, fetchedAtMillis, null));
+    }
+
+    /**
+     * Queues a link so that {@link #get} of {@code alias} returns the entry stored under {@code target}.
+     */
+    public void linkAsync(String alias, String target) {
+        queue(alias, new Pending(null, System.currentTimeMillis(), target));
+    }
+
+    private void queue(String key, Pending pending) {
+        dirty.put(key, pending);
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                writer.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushScheduled.set(false);
+                        flush();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false);
+                log.debug("Disk cache {} is closed, dropping write for '{}'", file, key);
+            }
+        }
+    }
+
+    /**
+     * Writes every queued entry to the mapped file.
+     */
+    void flush() {
+        Iterator<Map.Entry<String, Pending>> it = dirty.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Pending> entry = it.next();
+            Pending pending = entry.getValue();
+            write(entry.getKey(), pending);
+            // keep it queued if a newer value arrived while we were writing
+            dirty.remove(entry.getKey(), pending);
+        }
+    }
+
+    /**
+     * Writes pending entries, forces them to disk and closes the file.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for disk cache writes to {}", file);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+
+        lock.writeLock().lock();
+        try {
+            mapped.force();
+            channel.close();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to close disk cache {}", file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void write(String key, Pending pending) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] record;
+        try {
+            record = pending.target != null
+                    ? encodeLink(keyBytes, pending.target, pending.fetchedAtMillis)
+                    : encode(keyBytes, pending.response, pending.fetchedAtMillis);
+        } catch (BufferOverflowException e) {
+            log.debug("Weather for '{}' does not fit into a disk cache slot, not storing it", key);
+            return;
+        }
+
+        int home = home(keyBytes);
+        lock.writeLock().lock();
+        try {
+            int target = -1;
+            long oldest = Long.MAX_VALUE;
+            boolean torn = false;
+            for (int i = 0; i < PROBE_LIMIT; i++) {
+                int index = (home + i) % slotCount;
+                int offset = slotOffset(index);
+                byte state = mapped.get(offset);
+                if (state == EMPTY) {
+                    if (!torn) {
+                        target = index;
+                    }
+                    break;
+                }
+                if (state == WRITING) {
+                    // left by an interrupted write; reuse it unless the key turns up further along
+                    if (!torn) {
+                        torn = true;
+                        target = index;
+                    }
+                    continue;
+                }
+                writeView.position(offset + 1);
+                if (keyMatches(writeView, keyBytes)) {
+                    target = index;
+                    break;
+                }
+                long fetchedAt = mapped.getLong(offset + 3 + mapped.getShort(offset + 1));
+                if (!torn && fetchedAt < oldest) {
+                    oldest = fetchedAt;
+                    target = index;
+                }
+            }
+
+            // write the body first and flip the state byte last, so a torn write leaves a slot lookups skip
+            int offset = slotOffset(target);
+            mapped.put(offset, WRITING);
+            writeView.position(offset + 1);
+            writeView.put(record, 1, record.length - 1);
+            mapped.put(offset, record[0]);
+        } catch (RuntimeException e) {
+            log.warn("Failed to write disk cache entry for '{}' to {}", key, file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static byte[] encode(byte[] key, WeatherResponse response, long fetchedAtMillis) {
+        if (key.length > Short.MAX_VALUE) {
+            throw new BufferOverflowException();
+        }
+        ByteBuffer buf = ByteBuffer.allocate(SLOT_SIZE);
+        buf.put(USED);
+        buf.putShort((short) key.length);
+        buf.put(key);
+        buf.putLong(fetchedAtMillis);
+
+        WeatherInfo weather = response.getWeather();
+        TemperatureInfo temperature = response.getTemperature();
+        WindInfo wind = response.getWind();
+        SysInfo sys = response.getSys();
+        CoordInfo coord = response.getCoord();
+        int flags = (weather != null ? HAS_WEATHER : 0)
+                | (temperature != null ? HAS_TEMPERATURE : 0)
+                | (wind != null ? HAS_WIND : 0)
+                | (sys != null ? HAS_SYS : 0)
+                | (coord != null ? HAS_COORD : 0);
+        buf.put((byte) flags);
+
+        if (weather != null) {
+            putString(buf, weather.getMain());
+            putString(buf, weather.getDescription());
+        }
+        if (temperature != null) {
+            buf.putDouble(temperature.getTemp());
+            buf.putDouble(temperature.getFeelsLike());
+        }
+        if (wind != null) {
+            buf.putDouble(wind.getSpeed());
+        }
+        if (sys != null) {
+            buf.putLong(sys.getSunrise());
+            buf.putLong(sys.getSunset());
+        }
+        if (coord != null) {
+            buf.putDouble(coord.getLat());
+            buf.putDouble(coord.getLon());
+        }
+        buf.putLong(response.getId());
+        buf.putInt(response.getVisibility());
+        buf.putLong(response.getDatetime());
+        buf.putInt(response.getTimezone());
+        putString(buf, response.getName());
+
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    private static byte[] encodeLink(byte[] key, String target, long linkedAtMillis) {
+        if (key.length > Short.MAX_VALUE) {
+            throw new BufferOverflowException();
+        }
+        ByteBuffer buf = ByteBuffer.allocate(SLOT_SIZE);
+        buf.put(LINK);
+        buf.putShort((short) key.length);
+        buf.put(key);
+        // same place as a response's fetch time, so links age out of a full probe chain like entries
+        buf.putLong(linkedAtMillis);
+        putString(buf, target);
+        return Arrays.copyOf(buf.array(), buf.position());
+    }
+
+    // expects the buffer positioned right after the key
+    private static Stored decode(ByteBuffer buf) {
+        long fetchedAtMillis = buf.getLong();
+        int flags = buf.get();
+
+        WeatherResponse response = new WeatherResponse();
+        if ((flags & HAS_WEATHER) != 0) {
+            String main = getString(buf);
+            response.setWeather(new WeatherInfo(main, getString(buf)));
+        }
+        if ((flags & HAS_TEMPERATURE) != 0) {
+            double temp = buf.getDouble();
+            response.setTemperature(new TemperatureInfo(temp, buf.getDouble()));
+        }
+        if ((flags & HAS_WIND) != 0) {
+            response.setWind(new WindInfo(buf.getDouble()));
+        }
+        if ((flags & HAS_SYS) != 0) {
+            long sunrise = buf.getLong();
+            response.setSys(new SysInfo(sunrise, buf.getLong()));
+        }
+        if ((flags & HAS_COORD) != 0) {
+            double lat = buf.getDouble();
+            response.setCoord(new CoordInfo(lat, buf.getDouble()));
+        }
+        response.setId(buf.getLong());
+        response.setVisibility(buf.getInt());
+        response.setDatetime(buf.getLong());
+        response.setTimezone(buf.getInt());
+        response.setName(getString(buf));
+        return new Stored(response, fetchedAtMillis);
+    }
+
+    // expects the buffer positioned at the key length; leaves it after the key
+    private static boolean keyMatches(ByteBuffer slot, byte[] key) {
+        int length = slot.getShort();
+        if (length != key.length) {
+            return false;
+        }
+        for (byte b : key) {
+            if (slot.get() != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void putString(ByteBuffer buf, String value) {
+        if (value == null) {
+            buf.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new BufferOverflowException();
+        }
+        buf.putShort((short) bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int length = buf.getShort();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+        buf.position(buf.position() + length);
+        return value;
+    }
+
+    private int home(byte[] key) {
+        int h = Arrays.hashCode(key);
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % slotCount;
+    }
+
+    private static int slotOffset(int index) {
+        return HEADER_SIZE + index * SLOT_SIZE;
+    }
+
+    private static int readSlotCount(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        int magic = header.getInt();
+        int version = header.getInt();
+        int slotCount = header.getInt();
+        int slotSize = header.getInt();
+        if (magic != MAGIC || version != VERSION || slotSize != SLOT_SIZE || slotCount <= 0
+                || channel.size() < HEADER_SIZE + (long) slotCount * SLOT_SIZE) {
+            log.info("Disk cache file has an unknown layout, starting with an empty one");
+            return -1;
+        }
+        return slotCount;
+    }
+
+    private static int tableSize(int minSlots) {
+        // twice the expected entries keeps probe chains short; capped so offsets stay within an int
+        long slots = Math.max(64L, 2L * minSlots);
+        return (int) Math.min(slots, (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE);
+    }
+
+    /**
+     * A response read back from disk together with the time it was originally fetched.
+     */
+    public static final class Stored {
+        private final WeatherResponse response;
+        private final long fetchedAtMillis;
+
+        private Stored(WeatherResponse response, long fetchedAtMillis) {
+            this.response = response;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+
+        public WeatherResponse getResponse() {
+            return response;
+        }
+
+        public long getFetchedAtMillis() {
+            return fetchedAtMillis;
+        }
+    }
+
+    /**
+     * A queued write: a response, or a link to {@code target} when that is set.
+     */
+    private static final class Pending {
+        private final WeatherResponse response;
+        private final long fetchedAtMillis;
+        private final String target;
+
+        private Pending(WeatherResponse response, long fetchedAtMillis, String target) {
+            this.response = response;
+            this.fetchedAtMillis = fetchedAtMillis;
+            this.target = target;
+        }
+    }
+}
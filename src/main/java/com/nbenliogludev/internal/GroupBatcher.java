@@ -0,0 +1,242 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.exception.WeatherNotFoundException;
+import com.nbenliogludev.exception.WeatherSdkException;
+import com.nbenliogludev.model.WeatherResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Collects lookups by city ID for a short window and sends them as one call to the group endpoint,
+ * which answers up to {@link #MAX_GROUP_SIZE} cities at once.
+ * <p>
+ * A batch is sent when it is full or when the window that started with its first ID has passed,
+ * whichever comes first. The same ID requested twice within a window is fetched once.
+ * <p>
+ * A batch that only holds background refreshes is sent on the background executor. As soon as a caller
+ * waits for one of its cities, it is sent on the caller-facing executor instead, so the caller never
+ * queues behind other background work.
+ *
+ * @author nbenliogludev
+ */
+public class GroupBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupBatcher.class);
+
+    public static final int MAX_GROUP_SIZE = 20;
+
+    private final ScheduledExecutorService scheduler;
+    private final long windowNanos;
+    private final Executor executor;
+    private final Executor backgroundExecutor;
+    private final Fetcher fetcher;
+
+    private final Object lock = new Object();
+    private final AtomicLong groupRequests = new AtomicLong();
+    private Batch current;
+    private boolean closed;
+
+    /**
+     * @param executor           sends batches that a caller is waiting for
+     * @param backgroundExecutor sends batches of background refreshes only
+     */
+    public GroupBatcher(ScheduledExecutorService scheduler, long windowMillis, Executor executor,
+                        Executor backgroundExecutor, Fetcher fetcher) {
+        this.scheduler = scheduler;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.executor = executor;
+        this.backgroundExecutor = backgroundExecutor;
+        this.fetcher = fetcher;
+    }
+
+    public CompletableFuture<WeatherResponse> fetchAsync(long id) {
+        return enqueue(id, false);
+    }
+
+    /**
+     * Like {@link #fetchAsync(long)} for a refresh nobody waits for.
+     */
+    public CompletableFuture<WeatherResponse> refreshAsync(long id) {
+        return enqueue(id, true);
+    }
+
+    private CompletableFuture<WeatherResponse> enqueue(long id, boolean background) {
+        Batch full = null;
+        CompletableFuture<WeatherResponse> result;
+        synchronized (lock) {
+            if (closed) {
+                CompletableFuture<WeatherResponse> failed = new CompletableFuture<WeatherResponse>();
+                failed.completeExceptionally(new WeatherSdkException("Weather client has been shut down"));
+                return failed;
+            }
+            if (current == null) {
+                current = new Batch();
+                current.timer = schedule(current);
+            }
+            result = current.add(id);
+            current.interactive |= !background;
+            if (current.calls.size() >= MAX_GROUP_SIZE) {
+                full = current;
+                current = null;
+            }
+        }
+        if (full != null) {
+            if (full.timer != null) {
+                full.timer.cancel(false);
+            }
+            dispatch(full);
+        }
+        // callers sharing an ID each get their own stage, so cancelling one does not affect the others
+        return result.thenApply(Function.<WeatherResponse>identity());
+    }
+
+    /**
+     * Blocking form of {@link #fetchAsync(long)} for callers that already run on a fetch thread. Gives up
+     * after {@code timeoutMillis}, which should cover the window plus the group call with its retries.
+     */
+    public WeatherResponse fetch(long id, long timeoutMillis) throws WeatherSdkException {
+        CompletableFuture<WeatherResponse> call = fetchAsync(id);
+        try {
+            return call.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WeatherSdkException("Interrupted while waiting for group request", e);
+        } catch (ExecutionException e) {
+            throw SingleFlight.rethrow(e.getCause());
+        } catch (TimeoutException e) {
+            call.cancel(false);
+            throw new WeatherSdkException("Timed out waiting for group request for city #" + id, e);
+        }
+    }
+
+    /**
+     * Number of group calls sent so far.
+     */
+    public long getGroupRequestCount() {
+        return groupRequests.get();
+    }
+
+    /**
+     * Fails the batch that is still collecting and every later lookup.
+     */
+    public void close() {
+        Batch pending;
+        synchronized (lock) {
+            closed = true;
+            pending = current;
+            current = null;
+        }
+        if (pending != null) {
+            pending.fail(new WeatherSdkException("Weather client has been shut down"));
+        }
+    }
+
+    private ScheduledFuture<?> schedule(Batch batch) {
+        try {
+            return scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (lock) {
+                        if (current != batch) {
+                            return;
+                        }
+                        current = null;
+                    }
+                    dispatch(batch);
+                }
+            }, windowNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // scheduler is gone; the batch is still sent once it fills up or the client shuts down
+            log.debug("Group window timer rejected", e);
+            return null;
+        }
+    }
+
+    private void dispatch(Batch batch) {
+        try {
+            (batch.interactive ? executor : backgroundExecutor).execute(new RejectableTask() {
+                @Override
+                public void run() {
+                    send(batch);
+                }
+
+                @Override
+                public void reject(RejectedExecutionException cause) {
+                    batch.fail(new WeatherSdkException("Executor rejected weather request", cause));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            batch.fail(new WeatherSdkException("Executor rejected weather request", e));
+        }
+    }
+
+    private void send(Batch batch) {
+        List<Long> ids = new ArrayList<Long>(batch.calls.keySet());
+        groupRequests.incrementAndGet();
+        log.debug("Sending group request for {} cities", ids.size());
+
+        Map<Long, WeatherResponse> responses;
+        try {
+            responses = fetcher.fetch(ids);
+        } catch (Throwable t) {
+            batch.fail(t);
+            return;
+        }
+        for (Map.Entry<Long, CompletableFuture<WeatherResponse>> call : batch.calls.entrySet()) {
+            WeatherResponse response = responses.get(call.getKey());
+            if (response != null) {
+                call.getValue().complete(response);
+            } else {
+                call.getValue().completeExceptionally(new WeatherNotFoundException(
+                        "Weather API returned no data for city #" + call.getKey(), null));
+            }
+        }
+    }
+
+    private static final class Batch {
+
+        private final Map<Long, CompletableFuture<WeatherResponse>> calls =
+                new LinkedHashMap<Long, CompletableFuture<WeatherResponse>>();
+        private ScheduledFuture<?> timer;
+        // guarded by the batcher's lock until the batch is dispatched
+        private boolean interactive;
+
+        private CompletableFuture<WeatherResponse> add(long id) {
+            CompletableFuture<WeatherResponse> call = calls.get(id);
+            if (call == null) {
+                call = new CompletableFuture<WeatherResponse>();
+                calls.put(id, call);
+            }
+            return call;
+        }
+
+        private void fail(Throwable error) {
+            for (CompletableFuture<WeatherResponse> call : calls.values()) {
+                call.completeExceptionally(error);
+            }
+        }
+    }
+
+    public interface Fetcher {
+
+        /**
+         * Fetches the given cities in one call. Cities the API did not return are simply missing from the result.
+         */
+        Map<Long, WeatherResponse> fetch(List<Long> ids) throws WeatherSdkException;
+    }
+}
@@ -0,0 +1,122 @@
+package com.nbenliogludev.internal;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URLEncoder;
+import java.util.Locale;
+
+/**
+ * Something the current weather endpoint can be asked about: a city name, an OpenWeather city ID or
+ * a pair of coordinates. Each has a cache key and the query parameters that fetch it.
+ * <p>
+ * Coordinates are keyed by the grid cell they fall into, so nearby points share one key.
+ *
+ * @author nbenliogludev
+ */
+public final class Location {
+
+    private static final String CITY_PREFIX = "q:";
+    private static final String ID_PREFIX = "id:";
+    private static final String CELL_PREFIX = "geo:";
+
+    private final String key;
+    private final String query;
+    private final String description;
+    private final long id;
+
+    private Location(String key, String query, String description, long id) {
+        this.key = key;
+        this.query = query;
+        this.description = description;
+        this.id = id;
+    }
+
+    public static Location ofCity(String city) {
+        String name = city.trim();
+        return new Location(cityKey(name), "q=" + urlEncode(name), name, 0L);
+    }
+
+    public static Location ofId(long id) {
+        return new Location(idKey(id), "id=" + id, "city #" + id, id);
+    }
+
+    public static Location ofCoordinates(double lat, double lon, double cellDegrees) {
+        String latText = plain(lat);
+        String lonText = plain(lon);
+        return new Location(cellKey(lat, lon, cellDegrees),
+                "lat=" + latText + "&lon=" + lonText, latText + "," + lonText, 0L);
+    }
+
+    /**
+     * Rebuilds a location from its key, e.g. to refresh a cached entry. A grid cell is queried at its centre.
+     */
+    public static Location fromKey(String key, double cellDegrees) {
+        if (key.startsWith(ID_PREFIX)) {
+            return ofId(Long.parseLong(key.substring(ID_PREFIX.length())));
+        }
+        if (key.startsWith(CELL_PREFIX)) {
+            int separator = key.indexOf(':', CELL_PREFIX.length());
+            long latCell = Long.parseLong(key.substring(CELL_PREFIX.length(), separator));
+            long lonCell = Long.parseLong(key.substring(separator + 1));
+            return ofCoordinates((latCell + 0.5) * cellDegrees, (lonCell + 0.5) * cellDegrees, cellDegrees);
+        }
+        if (key.startsWith(CITY_PREFIX)) {
+            return ofCity(key.substring(CITY_PREFIX.length()));
+        }
+        throw new IllegalArgumentException("Not a location key: " + key);
+    }
+
+    public static boolean isIdKey(String key) {
+        return key.startsWith(ID_PREFIX);
+    }
+
+    public static String cityKey(String city) {
+        return CITY_PREFIX + city.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public static String idKey(long id) {
+        return ID_PREFIX + id;
+    }
+
+    public static String cellKey(double lat, double lon, double cellDegrees) {
+        return CELL_PREFIX + (long) Math.floor(lat / cellDegrees) + ":" + (long) Math.floor(lon / cellDegrees);
+    }
+
+    public String key() {
+        return key;
+    }
+
+    /**
+     * OpenWeather city ID, or 0 if this location is a name or coordinates.
+     */
+    public long id() {
+        return id;
+    }
+
+    /**
+     * Query parameters selecting this location, already URL-encoded.
+     */
+    public String query() {
+        return query;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    private static String plain(double value) {
+        // Double.toString switches to scientific notation for small values, which the API does not accept;
+        // six decimals are well below a metre and hide floating point noise such as 0.15000000000000002
+        return BigDecimal.valueOf(value).setScale(6, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+    }
+
+    private static String urlEncode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 is not supported", e);
+        }
+    }
+}
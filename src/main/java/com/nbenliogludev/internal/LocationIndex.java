@@ -0,0 +1,61 @@
+package com.nbenliogludev.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Maps the different keys a place can be requested by (name, grid cell) to the key its response is
+ * cached under, normally the OpenWeather city ID. This way a lookup by name, by ID and by nearby
+ * coordinates all land on the same cache entry.
+ * <p>
+ * Aliases whose target has left the cache are pruned once the index grows past {@code maxAliases}.
+ *
+ * @author nbenliogludev
+ */
+public class LocationIndex {
+
+    private final ConcurrentHashMap<String, String> aliases = new ConcurrentHashMap<String, String>();
+    private final int maxAliases;
+    private final Predicate<String> isLive;
+
+    /**
+     * @param isLive tells whether a primary key is still cached
+     */
+    public LocationIndex(int maxAliases, Predicate<String> isLive) {
+        this.maxAliases = maxAliases;
+        this.isLive = isLive;
+    }
+
+    /**
+     * Returns the primary key for {@code key}, or {@code key} itself if it is not an alias.
+     */
+    public String resolve(String key) {
+        String primary = aliases.get(key);
+        return primary != null ? primary : key;
+    }
+
+    /**
+     * @return whether {@code alias} now points at {@code primary} and did not before
+     */
+    public boolean link(String alias, String primary) {
+        if (alias.equals(primary)) {
+            return false;
+        }
+        if (aliases.size() >= maxAliases && !aliases.containsKey(alias)) {
+            prune();
+            if (aliases.size() >= maxAliases) {
+                // only live targets left; the lookup will still work, just through its own key
+                return false;
+            }
+        }
+        return !primary.equals(aliases.put(alias, primary));
+    }
+
+    public int size() {
+        return aliases.size();
+    }
+
+    private void prune() {
+        aliases.values().removeIf(isLive.negate());
+    }
+}
@@ -0,0 +1,156 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.model.TemperatureInfo;
+import com.nbenliogludev.model.WeatherHistory;
+import com.nbenliogludev.model.WeatherResponse;
+import com.nbenliogludev.model.WindInfo;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the last observations of each city in a ring buffer of primitive columns, 16 bytes per
+ * observation: the observation time as an offset in seconds from the city's first observation, and
+ * temperature, feels-like temperature and wind speed as floats.
+ * <p>
+ * An observation is only recorded if it is newer than the last one, so refreshes that return the same
+ * observation add nothing. When more than {@code maxCities} cities are tracked, the one that got a new
+ * observation least recently is dropped; that order is kept in an access-ordered map, so no scan is needed.
+ * Queries read the series without taking that map's lock.
+ *
+ * @author nbenliogludev
+ */
+public class ObservationHistory {
+
+    private final int capacity;
+    private final int maxCities;
+    private final ConcurrentHashMap<String, Series> series = new ConcurrentHashMap<String, Series>();
+
+    // least recently observed first; guarded by itself
+    private final LinkedHashMap<String, Series> recency = new LinkedHashMap<String, Series>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Series> eldest) {
+            if (size() <= maxCities) {
+                return false;
+            }
+            series.remove(eldest.getKey(), eldest.getValue());
+            return true;
+        }
+    };
+
+    public ObservationHistory(int capacity, int maxCities) {
+        this.capacity = capacity;
+        this.maxCities = maxCities;
+    }
+
+    public void record(String key, WeatherResponse response) {
+        long datetime = response.getDatetime();
+        if (datetime <= 0) {
+            return;
+        }
+        Series s = series.get(key);
+        if (s == null) {
+            s = new Series(capacity, datetime);
+            Series existing = series.putIfAbsent(key, s);
+            if (existing != null) {
+                s = existing;
+            }
+        }
+        TemperatureInfo temperature = response.getTemperature();
+        WindInfo wind = response.getWind();
+        boolean added = s.add(datetime,
+                temperature != null ? temperature.getTemp() : Double.NaN,
+                temperature != null ? temperature.getFeelsLike() : Double.NaN,
+                wind != null ? wind.getSpeed() : Double.NaN);
+        if (added) {
+            synchronized (recency) {
+                // the series may have been dropped while this observation was added to it
+                Series current = series.putIfAbsent(key, s);
+                recency.put(key, current != null ? current : s);
+            }
+        }
+    }
+
+    /**
+     * Observations with a time between {@code fromEpochSecond} and {@code toEpochSecond}, both inclusive.
+     */
+    public WeatherHistory query(String key, long fromEpochSecond, long toEpochSecond) {
+        Series s = series.get(key);
+        if (s == null) {
+            return new WeatherHistory(new long[0], new float[0], new float[0], new float[0]);
+        }
+        return s.query(fromEpochSecond, toEpochSecond);
+    }
+
+    int size() {
+        return series.size();
+    }
+
+    private static final class Series {
+
+        private final long base;
+        private final int[] offsets;
+        private final float[] temperatures;
+        private final float[] feelsLike;
+        private final float[] windSpeeds;
+        // index of the oldest observation and number held
+        private int start;
+        private int count;
+
+        private Series(int capacity, long base) {
+            this.base = base;
+            this.offsets = new int[capacity];
+            this.temperatures = new float[capacity];
+            this.feelsLike = new float[capacity];
+            this.windSpeeds = new float[capacity];
+        }
+
+        private synchronized boolean add(long datetime, double temperature, double feels, double windSpeed) {
+            if (datetime < base || (count > 0 && datetime <= lastDatetime())) {
+                return false;
+            }
+            int slot = (start + count) % offsets.length;
+            if (count == offsets.length) {
+                start = (start + 1) % offsets.length;
+            } else {
+                count++;
+            }
+            offsets[slot] = (int) (datetime - base);
+            temperatures[slot] = (float) temperature;
+            feelsLike[slot] = (float) feels;
+            windSpeeds[slot] = (float) windSpeed;
+            return true;
+        }
+
+        private synchronized long lastDatetime() {
+            return count == 0 ? base : base + offsets[(start + count - 1) % offsets.length];
+        }
+
+        private synchronized WeatherHistory query(long from, long to) {
+            long[] times = new long[count];
+            float[] temps = new float[count];
+            float[] feels = new float[count];
+            float[] winds = new float[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                int slot = (start + i) % offsets.length;
+                long datetime = base + offsets[slot];
+                if (datetime < from) {
+                    continue;
+                }
+                if (datetime > to) {
+                    break;
+                }
+                times[n] = datetime;
+                temps[n] = temperatures[slot];
+                feels[n] = feelsLike[slot];
+                winds[n] = windSpeeds[slot];
+                n++;
+            }
+            return new WeatherHistory(Arrays.copyOf(times, n), Arrays.copyOf(temps, n),
+                    Arrays.copyOf(feels, n), Arrays.copyOf(winds, n));
+        }
+    }
+}
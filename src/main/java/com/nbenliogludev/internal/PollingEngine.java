@@ -0,0 +1,201 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.metrics.WeatherMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Periodically refreshes a set of items without letting one cycle run all fetches at once.
+ * <p>
+ * A cycle takes a snapshot of the items and dispatches them one by one, spaced evenly across
+ * the polling interval and never faster than the {@link TokenBucket} allows. Dispatched
+ * refreshes run asynchronously, at most {@code concurrency} at a time. The next cycle starts one
+ * interval after the previous one started, or right after its last dispatch if rate limiting
+ * stretched the cycle beyond the interval.
+ * <p>
+ * The scheduler only runs the short dispatch step, so a single thread is enough.
+ *
+ * @author nbenliogludev
+ */
+public class PollingEngine<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(PollingEngine.class);
+
+    private final ScheduledExecutorService scheduler;
+    private final long intervalNanos;
+    private final ConcurrencyLimiter limiter;
+    private final TokenBucket rateLimiter;
+    private final Target<T> target;
+    private final WeatherMetrics metrics;
+
+    private volatile boolean stopped;
+    private volatile ScheduledFuture<?> next;
+
+    public PollingEngine(ScheduledExecutorService scheduler, long intervalMillis, int concurrency,
+                         TokenBucket rateLimiter, Target<T> target, WeatherMetrics metrics) {
+        this.scheduler = scheduler;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.limiter = new ConcurrencyLimiter(concurrency);
+        this.rateLimiter = rateLimiter;
+        this.target = target;
+        this.metrics = metrics;
+    }
+
+    public void start() {
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                startCycle();
+            }
+        }, 0L);
+    }
+
+    /**
+     * Stops dispatching. Refreshes that were already dispatched are left to finish.
+     */
+    public void stop() {
+        stopped = true;
+        ScheduledFuture<?> pending = next;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    private void startCycle() {
+        long start = System.nanoTime();
+        List<T> items;
+        try {
+            items = new ArrayList<T>(target.items());
+        } catch (RuntimeException e) {
+            log.warn("Failed to collect items for polling cycle", e);
+            items = new ArrayList<T>();
+        }
+
+        if (items.isEmpty()) {
+            log.debug("Polling cycle skipped: nothing to refresh");
+            scheduleCycle(start);
+            return;
+        }
+
+        log.debug("Polling cycle started for {} items", items.size());
+        new Cycle(items, start).dispatchNext();
+    }
+
+    private void scheduleCycle(long previousStart) {
+        long delay = previousStart + intervalNanos - System.nanoTime();
+        if (delay < 0) {
+            log.warn("Polling cycle took longer than the polling interval; consider a higher rate limit");
+        }
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                startCycle();
+            }
+        }, Math.max(0L, delay));
+    }
+
+    private void schedule(Runnable task, long delayNanos) {
+        if (stopped) {
+            return;
+        }
+        try {
+            next = scheduler.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Polling scheduler rejected task, stopping polling");
+            stopped = true;
+        }
+        if (stopped) {
+            // raced with stop(): make sure the task just scheduled does not run
+            ScheduledFuture<?> pending = next;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+        }
+    }
+
+    private final class Cycle implements Runnable {
+
+        private final List<T> items;
+        private final long startNanos;
+        private final long spacingNanos;
+        private final AtomicInteger remaining;
+        private final AtomicInteger refreshed = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private int index;
+
+        private Cycle(List<T> items, long startNanos) {
+            this.items = items;
+            this.startNanos = startNanos;
+            this.spacingNanos = intervalNanos / items.size();
+            this.remaining = new AtomicInteger(items.size());
+        }
+
+        @Override
+        public void run() {
+            T item = items.get(index++);
+            limiter.submit(new Supplier<CompletionStage<?>>() {
+                @Override
+                public CompletionStage<?> get() {
+                    return refresh(item).whenComplete(new BiConsumer<Object, Throwable>() {
+                        @Override
+                        public void accept(Object result, Throwable error) {
+                            (error == null ? refreshed : failures).incrementAndGet();
+                            if (remaining.decrementAndGet() == 0) {
+                                metrics.pollingCycle(System.nanoTime() - startNanos,
+                                        refreshed.get(), failures.get());
+                            }
+                        }
+                    });
+                }
+            });
+
+            if (index < items.size()) {
+                dispatchNext();
+            } else {
+                scheduleCycle(startNanos);
+            }
+        }
+
+        private void dispatchNext() {
+            long due = startNanos + index * spacingNanos - System.nanoTime();
+            long permit = rateLimiter == null ? 0L : rateLimiter.reserve();
+            schedule(this, Math.max(due, permit));
+        }
+
+        private CompletionStage<?> refresh(T item) {
+            try {
+                return target.refresh(item);
+            } catch (RuntimeException e) {
+                CompletableFuture<Object> failed = new CompletableFuture<Object>();
+                failed.completeExceptionally(e);
+                return failed;
+            }
+        }
+    }
+
+    public interface Target<T> {
+
+        /**
+         * Items to refresh in the next cycle.
+         */
+        Collection<T> items();
+
+        /**
+         * Starts refreshing one item; the returned stage completes when the refresh is done.
+         */
+        CompletionStage<?> refresh(T item);
+    }
+}
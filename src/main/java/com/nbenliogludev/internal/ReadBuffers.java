@@ -0,0 +1,131 @@
+package com.nbenliogludev.internal;
+
+import java.io.CharArrayReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Pooled byte and char buffers for reading response bodies, so a call does not allocate its own
+ * stream decoder and copy buffers. Buffers grown past {@link #MAX_RETAINED_SIZE} for an unusually large
+ * body are replaced on the next read instead of being kept.
+ * <p>
+ * The pool is shared rather than per thread, because with virtual threads every fetch runs on a new thread
+ * and a per-thread cache would never be reused. It keeps at most {@link #MAX_POOLED} instances; callers
+ * beyond that allocate buffers that are dropped after use.
+ * <p>
+ * Use in try-with-resources: the contents are only valid until {@link #close()} returns the buffers.
+ *
+ * @author nbenliogludev
+ */
+public final class ReadBuffers implements Closeable {
+
+    static final int INITIAL_SIZE = 4096;
+    static final int MAX_RETAINED_SIZE = 64 * 1024;
+    static final int MAX_POOLED = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    private static final Queue<ReadBuffers> POOL = new ConcurrentLinkedQueue<ReadBuffers>();
+    // ConcurrentLinkedQueue.size() walks the queue
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private byte[] bytes = new byte[INITIAL_SIZE];
+    private char[] chars = new char[INITIAL_SIZE];
+    private int length;
+
+    private ReadBuffers() {
+    }
+
+    public static ReadBuffers acquire() {
+        ReadBuffers buffers = POOL.poll();
+        if (buffers == null) {
+            return new ReadBuffers();
+        }
+        POOLED.decrementAndGet();
+        return buffers;
+    }
+
+    /**
+     * Returns the buffers to the pool, or drops them when it is full.
+     */
+    @Override
+    public void close() {
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(this);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reads {@code stream} to the end into the byte buffer and closes it.
+     */
+    public ReadBuffers read(InputStream stream) throws IOException {
+        if (bytes.length > MAX_RETAINED_SIZE) {
+            bytes = new byte[INITIAL_SIZE];
+        }
+        length = 0;
+        try {
+            int n;
+            while ((n = stream.read(bytes, length, bytes.length - length)) != -1) {
+                length += n;
+                if (length == bytes.length) {
+                    byte[] grown = new byte[bytes.length * 2];
+                    System.arraycopy(bytes, 0, grown, 0, length);
+                    bytes = grown;
+                }
+            }
+        } finally {
+            stream.close();
+        }
+        return this;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * CRC-32 of the bytes read by the last {@link #read(InputStream)}.
+     */
+    public CRC32 crc32() {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return crc;
+    }
+
+    /**
+     * Decodes the bytes read as UTF-8 into the char buffer and returns a reader over it.
+     */
+    public Reader reader() {
+        // UTF-8 never decodes to more chars than it has bytes
+        if (chars.length < length || chars.length > MAX_RETAINED_SIZE) {
+            chars = new char[Math.max(INITIAL_SIZE, length)];
+        }
+        CharBuffer out = CharBuffer.wrap(chars);
+        decoder.reset();
+        CoderResult result = decoder.decode(ByteBuffer.wrap(bytes, 0, length), out, true);
+        if (!result.isUnderflow()) {
+            throw new IllegalStateException("Unexpected result decoding response body: " + result);
+        }
+        decoder.flush(out);
+        return new CharArrayReader(chars, 0, out.position());
+    }
+
+    public String string() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,26 @@
+package com.nbenliogludev.internal;
+
+import java.util.Collection;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A task whose outcome somebody waits for. When the executor it was queued on drops it without running it,
+ * the task is rejected instead, so the waiting side fails rather than hanging.
+ *
+ * @author nbenliogludev
+ */
+public interface RejectableTask extends Runnable {
+
+    void reject(RejectedExecutionException cause);
+
+    /**
+     * Rejects the tasks among {@code dropped} that support it, e.g. what {@code shutdownNow()} returned.
+     */
+    static void rejectAll(Collection<? extends Runnable> dropped, String reason) {
+        for (Runnable task : dropped) {
+            if (task instanceof RejectableTask) {
+                ((RejectableTask) task).reject(new RejectedExecutionException(reason));
+            }
+        }
+    }
+}
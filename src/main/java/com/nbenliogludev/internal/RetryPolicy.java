@@ -0,0 +1,108 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.exception.WeatherApiException;
+import com.nbenliogludev.exception.WeatherNetworkException;
+import com.nbenliogludev.exception.WeatherSdkException;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bounded retries with exponential backoff. Each delay is drawn between half and all of
+ * {@code initialBackoff * 2^attempt}, so clients that failed together do not retry together.
+ * A 429 is only retried when the API said how long to wait, and then after exactly that long.
+ *
+ * @author nbenliogludev
+ */
+public class RetryPolicy {
+
+    static final long MAX_BACKOFF_MILLIS = 5000L;
+
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+
+    public RetryPolicy(int maxRetries, long initialBackoffMillis) {
+        this.maxRetries = maxRetries;
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Longest a call can take with all its retries when a single attempt takes at most {@code attemptMillis}.
+     */
+    public long maxCallMillis(long attemptMillis) {
+        return (maxRetries + 1L) * attemptMillis + maxRetries * MAX_BACKOFF_MILLIS;
+    }
+
+    /**
+     * Delay before retry number {@code attempt + 1}, counting from 0.
+     */
+    public long backoffMillis(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, initialBackoffMillis << Math.min(attempt, 20));
+        long floor = ceiling / 2;
+        return floor + ThreadLocalRandom.current().nextLong(ceiling - floor + 1);
+    }
+
+    /**
+     * Delay before retrying after {@code failure} on attempt {@code attempt}, counting from 0, or -1 if it
+     * should not be retried. A 429 waits for its {@code Retry-After}, and is not retried without one or when
+     * the API asks for longer than the longest backoff.
+     */
+    public long retryDelayMillis(WeatherSdkException failure, int attempt) {
+        if (attempt >= maxRetries) {
+            return -1L;
+        }
+        if (isThrottled(failure)) {
+            long retryAfter = ((WeatherApiException) failure).getRetryAfterMillis();
+            return retryAfter >= 0 && retryAfter <= MAX_BACKOFF_MILLIS ? retryAfter : -1L;
+        }
+        return isTransient(failure) ? backoffMillis(attempt) : -1L;
+    }
+
+    /**
+     * Whether a failure says something about the health of the API: network errors and 5xx.
+     * Such failures are retried and counted by the circuit breaker; others, like 404, are not.
+     */
+    public static boolean isTransient(WeatherSdkException e) {
+        if (e instanceof WeatherNetworkException) {
+            return true;
+        }
+        return e instanceof WeatherApiException && ((WeatherApiException) e).getStatusCode() >= 500;
+    }
+
+    /**
+     * Whether the API rejected the call because the key is over its rate limit (429). The API itself is
+     * healthy then, so this does not count towards the circuit breaker.
+     */
+    public static boolean isThrottled(WeatherSdkException e) {
+        return e instanceof WeatherApiException && ((WeatherApiException) e).getStatusCode() == 429;
+    }
+
+    /**
+     * Parses a {@code Retry-After} header, either delay seconds or an HTTP date, into a delay from
+     * {@code nowMillis}. Returns -1 for a missing or unparseable value.
+     */
+    public static long parseRetryAfter(String value, long nowMillis) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1L;
+        }
+        String trimmed = value.trim();
+        try {
+            long seconds = Long.parseLong(trimmed);
+            return seconds < 0 ? -1L : Math.min(seconds, Long.MAX_VALUE / 1000L) * 1000L;
+        } catch (NumberFormatException e) {
+            // not delay seconds, try an HTTP date
+        }
+        try {
+            long at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0L, at - nowMillis);
+        } catch (DateTimeParseException e) {
+            return -1L;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.nbenliogludev.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Threads shared by all clients for background work: one scheduler thread for timers and a small pool of
+ * workers for refreshes.
+ * <p>
+ * Each client submits through its own {@link Lane}. Workers serve lanes round-robin, one task at a time,
+ * so a client with a long refresh queue cannot delay the refreshes of the others.
+ *
+ * @author nbenliogludev
+ */
+public class SharedRuntime {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedRuntime.class);
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("weather-sdk-scheduler"));
+    private final BlockingQueue<Lane> ready = new LinkedBlockingQueue<Lane>();
+    private final List<Thread> workers = new ArrayList<Thread>();
+    private volatile boolean shutdown;
+
+    public SharedRuntime(int workerThreads) {
+        DaemonThreadFactory factory = new DaemonThreadFactory("weather-sdk-worker");
+        for (int i = 0; i < workerThreads; i++) {
+            Thread worker = factory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        log.debug("Started shared runtime with {} worker threads", workerThreads);
+    }
+
+    public ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    public Lane openLane() {
+        if (shutdown) {
+            throw new IllegalStateException("Shared runtime has been shut down");
+        }
+        return new Lane();
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        scheduler.shutdownNow();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        log.debug("Shared runtime shut down");
+    }
+
+    private void work() {
+        while (!shutdown) {
+            Lane lane;
+            try {
+                lane = ready.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Runnable task = lane.next();
+            if (task == null) {
+                continue;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.warn("Background task failed", e);
+            }
+            // a worker interrupted by a task, e.g. a cancelled fetch, must keep serving other lanes
+            if (!shutdown) {
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * One client's queue of background tasks.
+     */
+    public final class Lane implements Executor {
+
+        private final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+        private boolean queued;
+        private boolean closed;
+
+        private Lane() {
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            synchronized (this) {
+                if (closed || shutdown) {
+                    throw new RejectedExecutionException("Lane is closed");
+                }
+                tasks.add(task);
+                if (queued) {
+                    return;
+                }
+                queued = true;
+            }
+            ready.offer(this);
+        }
+
+        /**
+         * Rejects new tasks and the ones that have not started yet, which are dropped.
+         */
+        public void close() {
+            List<Runnable> dropped;
+            synchronized (this) {
+                closed = true;
+                dropped = new ArrayList<Runnable>(tasks);
+                tasks.clear();
+            }
+            RejectableTask.rejectAll(dropped, "Lane is closed");
+        }
+
+        public synchronized int queuedCount() {
+            return tasks.size();
+        }
+
+        // takes one task and puts the lane back at the end of the line if it has more
+        private Runnable next() {
+            Runnable task;
+            boolean more;
+            synchronized (this) {
+                task = tasks.poll();
+                more = !tasks.isEmpty();
+                queued = more;
+            }
+            if (more) {
+                ready.offer(this);
+            }
+            return task;
+        }
+    }
+}
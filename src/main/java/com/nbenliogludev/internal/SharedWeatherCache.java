@@ -0,0 +1,189 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.exception.WeatherApiException;
+import com.nbenliogludev.exception.WeatherSdkException;
+import com.nbenliogludev.metrics.NoopWeatherMetrics;
+import com.nbenliogludev.model.CoordInfo;
+import com.nbenliogludev.model.WeatherResponse;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Cache shared by the clients of several API keys (tenants), so that a city asked for by many tenants is
+ * fetched once and held once. Entries are keyed by a scope, the upstream and units the response was fetched
+ * with, plus the location; never by API key.
+ * <p>
+ * A miss is fetched by the tenant that asked first, with its own API key, and counted against that tenant;
+ * tenants asking for the same location meanwhile wait for that call. If the API refuses that tenant's key
+ * (401, 403 or 429), the waiting tenants do not share the error but fetch with their own keys.
+ * <p>
+ * Each tenant may own at most {@code maxEntriesPerTenant} entries, i.e. entries it added that are still
+ * cached. A tenant at its limit still gets its responses, they are just not shared.
+ *
+ * @author nbenliogludev
+ */
+public class SharedWeatherCache {
+
+    private final WeatherCache cache;
+    private final LocationIndex index;
+    private final SingleFlight<WeatherCache.Entry> inFlight = new SingleFlight<WeatherCache.Entry>();
+    private final int maxEntriesPerTenant;
+
+    private final ConcurrentHashMap<String, String> owners = new ConcurrentHashMap<String, String>();
+    private final ConcurrentHashMap<String, AtomicInteger> ownedCounts = new ConcurrentHashMap<String, AtomicInteger>();
+    private final ConcurrentHashMap<String, LongAdder> upstreamCalls = new ConcurrentHashMap<String, LongAdder>();
+
+    public SharedWeatherCache(int maxEntries, int maxEntriesPerTenant, long ttlMillis) {
+        this.cache = new WeatherCache(maxEntries, ttlMillis, NoopWeatherMetrics.INSTANCE);
+        this.maxEntriesPerTenant = maxEntriesPerTenant;
+        this.index = new LocationIndex(Math.max(1024, 16 * maxEntries), new Predicate<String>() {
+            @Override
+            public boolean test(String key) {
+                return cache.contains(key);
+            }
+        });
+    }
+
+    /**
+     * Returns the fresh shared entry for {@code location} if it was fetched after {@code newerThanMillis},
+     * or loads it through {@code upstream} on behalf of {@code tenant}. A caller refreshing its own copy passes
+     * that copy's fetch time, so a shared entry from the same upstream call does not count as a refresh.
+     * The entry's fetch time is the time of the upstream call, not of this lookup.
+     */
+    public WeatherCache.Entry get(String tenant, String scope, Location location, double cellDegrees,
+                                  long newerThanMillis, SingleFlight.Loader<WeatherResponse> upstream)
+            throws WeatherSdkException {
+        String key = scope + location.key();
+        WeatherCache.Entry hit = cache.getEntry(index.resolve(key));
+        if (hit != null && hit.getFetchedAtMillis() > newerThanMillis) {
+            return hit;
+        }
+        while (true) {
+            AtomicBoolean loaded = new AtomicBoolean();
+            try {
+                return inFlight.execute(key, new SingleFlight.Loader<WeatherCache.Entry>() {
+                    @Override
+                    public WeatherCache.Entry load() throws WeatherSdkException {
+                        loaded.set(true);
+                        WeatherCache.Entry cached = cache.peekEntry(index.resolve(key));
+                        if (cached != null && cached.getFetchedAtMillis() > newerThanMillis) {
+                            return cached;
+                        }
+                        WeatherResponse fresh = upstream.load();
+                        WeatherCache.Entry stored = put(tenant, scope, location, fresh, cellDegrees);
+                        return stored != null ? stored : WeatherCache.detachedEntry(key, fresh);
+                    }
+                });
+            } catch (WeatherApiException e) {
+                if (loaded.get() || !isKeyRefused(e)) {
+                    throw e;
+                }
+                // another tenant's key was refused; this tenant's own key may still be accepted
+            }
+        }
+    }
+
+    /**
+     * Shares a response {@code tenant} fetched from upstream. Returns null if the tenant is at its limit.
+     */
+    public WeatherCache.Entry put(String tenant, String scope, Location location, WeatherResponse response,
+                                  double cellDegrees) {
+        upstreamCalls(tenant).increment();
+        String primary = scope + (response.getId() > 0 ? Location.idKey(response.getId()) : location.key());
+        if (!admit(tenant, primary)) {
+            return null;
+        }
+        WeatherCache.Entry entry = cache.put(primary, response);
+
+        // not the reported name: one tenant's "London,CA" answers with name "London", which for the others
+        // must keep meaning London, GB
+        index.link(scope + location.key(), primary);
+        CoordInfo coord = response.getCoord();
+        if (coord != null) {
+            index.link(scope + Location.cellKey(coord.getLat(), coord.getLon(), cellDegrees), primary);
+        }
+        return entry;
+    }
+
+    /**
+     * Upstream calls whose responses {@code tenant} contributed to this cache.
+     */
+    public long getUpstreamCalls(String tenant) {
+        LongAdder calls = upstreamCalls.get(tenant);
+        return calls == null ? 0L : calls.sum();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    int ownedCount(String tenant) {
+        AtomicInteger count = ownedCounts.get(tenant);
+        return count == null ? 0 : count.get();
+    }
+
+    private static boolean isKeyRefused(WeatherApiException e) {
+        int status = e.getStatusCode();
+        return status == 401 || status == 403 || status == 429;
+    }
+
+    // counts are approximate under concurrent puts; the limit is a capacity bound, not an exact quota
+    private boolean admit(String tenant, String primary) {
+        if (owners.containsKey(primary)) {
+            // refreshing an entry someone already owns does not change ownership
+            return true;
+        }
+        AtomicInteger count = ownedCounter(tenant);
+        if (count.get() >= maxEntriesPerTenant) {
+            forgetEvicted();
+            if (count.get() >= maxEntriesPerTenant) {
+                return false;
+            }
+        }
+        if (owners.putIfAbsent(primary, tenant) == null) {
+            count.incrementAndGet();
+        }
+        return true;
+    }
+
+    // releases ownership of entries that have left the cache
+    private void forgetEvicted() {
+        Iterator<Map.Entry<String, String>> it = owners.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, String> owner = it.next();
+            if (!cache.contains(owner.getKey()) && owners.remove(owner.getKey(), owner.getValue())) {
+                ownedCounter(owner.getValue()).decrementAndGet();
+            }
+        }
+    }
+
+    private LongAdder upstreamCalls(String tenant) {
+        LongAdder calls = upstreamCalls.get(tenant);
+        if (calls == null) {
+            LongAdder created = new LongAdder();
+            calls = upstreamCalls.putIfAbsent(tenant, created);
+            if (calls == null) {
+                calls = created;
+            }
+        }
+        return calls;
+    }
+
+    private AtomicInteger ownedCounter(String tenant) {
+        AtomicInteger count = ownedCounts.get(tenant);
+        if (count == null) {
+            AtomicInteger created = new AtomicInteger();
+            count = ownedCounts.putIfAbsent(tenant, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,168 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.exception.WeatherSdkException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent loads of the same key: the first caller runs the loader,
+ * every caller that arrives while it is in flight waits for the same outcome.
+ *
+ * @author nbenliogludev
+ */
+public class SingleFlight<T> {
+
+    private final ConcurrentHashMap<String, CompletableFuture<T>> calls =
+            new ConcurrentHashMap<String, CompletableFuture<T>>();
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public T execute(String key, Loader<T> loader) throws WeatherSdkException {
+        CompletableFuture<T> call = new CompletableFuture<T>();
+        CompletableFuture<T> existing = calls.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+
+        executions.incrementAndGet();
+        try {
+            T value = loader.load();
+            call.complete(value);
+            return value;
+        } catch (WeatherSdkException | RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    /**
+     * Asynchronous counterpart of {@link #execute}: the leader's loader runs on {@code executor}
+     * and every caller gets its own dependent stage, so cancelling one does not affect the others.
+     */
+    public CompletableFuture<T> executeAsync(String key, Loader<T> loader, Executor executor) {
+        CompletableFuture<T> call = new CompletableFuture<T>();
+        CompletableFuture<T> existing = calls.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing.thenApply(Function.<T>identity());
+        }
+
+        executions.incrementAndGet();
+        try {
+            executor.execute(new RejectableTask() {
+                @Override
+                public void run() {
+                    try {
+                        call.complete(loader.load());
+                    } catch (Throwable t) {
+                        call.completeExceptionally(t);
+                    } finally {
+                        calls.remove(key, call);
+                    }
+                }
+
+                @Override
+                public void reject(RejectedExecutionException cause) {
+                    calls.remove(key, call);
+                    call.completeExceptionally(new WeatherSdkException("Executor rejected weather request", cause));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            calls.remove(key, call);
+            call.completeExceptionally(new WeatherSdkException("Executor rejected weather request", e));
+        }
+        return call.thenApply(Function.<T>identity());
+    }
+
+    /**
+     * Variant of {@link #executeAsync(String, Loader, Executor)} for loads that are asynchronous already:
+     * the leader calls {@code starter} on the calling thread and no thread waits for the outcome.
+     */
+    public CompletableFuture<T> executeAsync(String key, Supplier<? extends CompletionStage<T>> starter) {
+        CompletableFuture<T> call = new CompletableFuture<T>();
+        CompletableFuture<T> existing = calls.putIfAbsent(key, call);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing.thenApply(Function.<T>identity());
+        }
+
+        executions.incrementAndGet();
+        CompletionStage<T> load;
+        try {
+            load = starter.get();
+        } catch (RuntimeException e) {
+            calls.remove(key, call);
+            call.completeExceptionally(e);
+            return call.thenApply(Function.<T>identity());
+        }
+        load.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T value, Throwable error) {
+                if (error != null) {
+                    call.completeExceptionally(error);
+                } else {
+                    call.complete(value);
+                }
+                calls.remove(key, call);
+            }
+        });
+        return call.thenApply(Function.<T>identity());
+    }
+
+    public boolean isInFlight(String key) {
+        return calls.containsKey(key);
+    }
+
+    public int inFlightCount() {
+        return calls.size();
+    }
+
+    public long getExecutionCount() {
+        return executions.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    private T await(CompletableFuture<T> call) throws WeatherSdkException {
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new WeatherSdkException("Interrupted while waiting for in-flight request", e);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    static WeatherSdkException rethrow(Throwable cause) {
+        if (cause instanceof WeatherSdkException) {
+            return (WeatherSdkException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new WeatherSdkException("In-flight request failed", cause);
+    }
+
+    public interface Loader<T> {
+        T load() throws WeatherSdkException;
+    }
+}
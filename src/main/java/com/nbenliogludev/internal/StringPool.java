@@ -0,0 +1,39 @@
+package com.nbenliogludev.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonicalizes strings drawn from a small vocabulary, such as weather conditions, so that every
+ * cached entry shares one instance. Once {@code maxSize} distinct values have been seen, new ones
+ * are returned as they are instead of growing the pool.
+ *
+ * @author nbenliogludev
+ */
+public class StringPool {
+
+    private final ConcurrentHashMap<String, String> pool = new ConcurrentHashMap<String, String>();
+    private final int maxSize;
+
+    public StringPool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = pool.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (pool.size() >= maxSize) {
+            return value;
+        }
+        pooled = pool.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+
+    public int size() {
+        return pool.size();
+    }
+}
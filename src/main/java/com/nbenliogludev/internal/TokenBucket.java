@@ -0,0 +1,46 @@
+package com.nbenliogludev.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token-bucket rate limiter that never blocks: {@link #reserve()} books the next permit and
+ * tells the caller how long to wait before using it, so the wait can be handed to a scheduler.
+ *
+ * @author nbenliogludev
+ */
+public class TokenBucket {
+
+    private final long nanosPerPermit;
+    private final long burstToleranceNanos;
+
+    // earliest time the next permit would be free if no burst were allowed; guarded by this
+    private long nextFreeNanos;
+
+    /**
+     * @param permitsPerMinute sustained rate
+     * @param burst            permits that may be taken back to back after an idle period
+     */
+    public TokenBucket(int permitsPerMinute, int burst) {
+        if (permitsPerMinute <= 0) {
+            throw new IllegalArgumentException("permitsPerMinute must be positive");
+        }
+        if (burst <= 0) {
+            throw new IllegalArgumentException("burst must be positive");
+        }
+        this.nanosPerPermit = TimeUnit.MINUTES.toNanos(1) / permitsPerMinute;
+        this.burstToleranceNanos = (burst - 1) * nanosPerPermit;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    /**
+     * Reserves one permit.
+     *
+     * @return nanoseconds until the reserved permit may be used, {@code 0} if it is available now
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        long next = nextFreeNanos - now > 0 ? nextFreeNanos : now;
+        nextFreeNanos = next + nanosPerPermit;
+        return Math.max(0L, next - burstToleranceNanos - now);
+    }
+}
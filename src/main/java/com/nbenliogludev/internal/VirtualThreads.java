@@ -0,0 +1,50 @@
+package com.nbenliogludev.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads (JDK 21+) from code compiled for Java 8, found by reflection at runtime.
+ *
+ * @author nbenliogludev
+ */
+public final class VirtualThreads {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private static final Method NEW_EXECUTOR = probe();
+
+    private VirtualThreads() {}
+
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * Returns an executor that starts a new virtual thread per task, or {@code null} if this JDK has none.
+     */
+    public static ExecutorService newExecutor() {
+        if (NEW_EXECUTOR == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) NEW_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            log.warn("Failed to create a virtual thread executor", e);
+            return null;
+        }
+    }
+
+    private static Method probe() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -1,71 +1,604 @@
 package com.nbenliogludev.internal;
 
+import com.nbenliogludev.metrics.NoopWeatherMetrics;
+import com.nbenliogludev.metrics.WeatherMetrics;
+import com.nbenliogludev.model.CoordInfo;
+import com.nbenliogludev.model.SysInfo;
+import com.nbenliogludev.model.TemperatureInfo;
+import com.nbenliogludev.model.WeatherInfo;
 import com.nbenliogludev.model.WeatherResponse;
+import com.nbenliogludev.model.WindInfo;
 
-import java.util.Iterator;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
 
 /**
+ * LRU + TTL cache for weather responses.
+ * <p>
+ * An entry is fresh for {@code ttlMillis}. With a positive {@code maxStaleMillis} it is kept for that much
+ * longer so {@link #getEntry} can still hand it out while a refresh is in progress; {@link #getIfFresh}
+ * never returns it once the TTL has passed.
+ * <p>
+ * Entries live in a {@link ConcurrentHashMap}, so reads never take a lock. The LRU order is
+ * kept in a linked list that is only touched under {@code policyLock}: reads record the
+ * accessed entry into striped, lossy buffers which are replayed against the list by whichever
+ * thread next holds the lock (a writer, or a reader that manages to {@code tryLock}).
+ *
  * @author nbenliogludev
  */
 public class WeatherCache {
 
+    private static final StringPool CONDITIONS = new StringPool(1024);
+
+    private static final int HAS_WEATHER = 1;
+    private static final int HAS_TEMPERATURE = 1 << 1;
+    private static final int HAS_WIND = 1 << 2;
+    private static final int HAS_SYS = 1 << 3;
+    private static final int HAS_COORD = 1 << 4;
+
     private final int maxSize;
     private final long ttlMillis;
+    private final long expireAfterMillis;
+    private final boolean compact;
+    private final WeatherMetrics metrics;
+
+    private final ConcurrentHashMap<String, Entry> map;
+    private final ReadBuffer readBuffer = new ReadBuffer();
+    private final Queue<Entry> removals = new ConcurrentLinkedQueue<Entry>();
 
-    private final LinkedHashMap<String, CachedEntry> map;
+    // access order, least recently used first; guarded by policyLock
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private Entry head;
+    private Entry tail;
+    private int linkedCount;
 
     public WeatherCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, NoopWeatherMetrics.INSTANCE);
+    }
+
+    public WeatherCache(int maxSize, long ttlMillis, WeatherMetrics metrics) {
+        this(maxSize, ttlMillis, 0L, metrics);
+    }
+
+    public WeatherCache(int maxSize, long ttlMillis, long maxStaleMillis, WeatherMetrics metrics) {
+        this(maxSize, ttlMillis, maxStaleMillis, false, metrics);
+    }
+
+    /**
+     * @param compact store responses flattened into primitive fields; saves memory with many cities,
+     *                at the cost of materializing a new {@link WeatherResponse} on every read
+     */
+    public WeatherCache(int maxSize, long ttlMillis, long maxStaleMillis, boolean compact, WeatherMetrics metrics) {
         this.maxSize = maxSize;
         this.ttlMillis = ttlMillis;
-        this.map = new LinkedHashMap<String, CachedEntry>(16, 0.75f, true);
+        this.expireAfterMillis = ttlMillis + maxStaleMillis;
+        this.compact = compact;
+        this.metrics = metrics;
+        this.map = new ConcurrentHashMap<String, Entry>(16);
     }
 
-    public synchronized WeatherResponse getIfFresh(String key) {
-        CachedEntry entry = map.get(key);
-        if (entry == null) {
+    public WeatherResponse getIfFresh(String key) {
+        Entry node = map.get(key);
+        if (node == null) {
+            metrics.cacheMiss();
             return null;
         }
 
-        long now = System.currentTimeMillis();
-        if (now - entry.fetchedAtMillis > ttlMillis) {
-            // просрочено — удаляем и возвращаем null
-            map.remove(key);
+        long age = System.currentTimeMillis() - node.fetchedAtMillis;
+        if (age > ttlMillis) {
+            if (age > expireAfterMillis) {
+                // просрочено — удаляем и возвращаем null
+                expire(node);
+            }
+            metrics.cacheMiss();
             return null;
         }
 
-        return entry.response;
+        recordHit(node);
+        return node.getResponse();
     }
 
-    public synchronized void put(String key, WeatherResponse response) {
-        map.put(key, new CachedEntry(response, System.currentTimeMillis()));
+    /**
+     * Returns the entry while it is fresh or still within the stale bound, recording the access.
+     * Callers check {@link Entry#getFetchedAtMillis()} to tell a fresh entry from a stale one.
+     */
+    public Entry getEntry(String key) {
+        return getEntry(key, expireAfterMillis);
+    }
 
-        if (map.size() > maxSize) {
-            Iterator<String> it = map.keySet().iterator();
-            if (it.hasNext()) {
-                it.next();
-                it.remove();
+    /**
+     * Like {@link #getEntry(String)}, but treats entries older than {@code maxAgeMillis} as a miss. They are
+     * kept until the stale bound passes, e.g. for {@link #peekStale(String)}.
+     */
+    public Entry getEntry(String key, long maxAgeMillis) {
+        Entry node = map.get(key);
+        if (node == null) {
+            metrics.cacheMiss();
+            return null;
+        }
+
+        long age = System.currentTimeMillis() - node.fetchedAtMillis;
+        if (age > maxAgeMillis) {
+            if (age > expireAfterMillis) {
+                expire(node);
+            }
+            metrics.cacheMiss();
+            return null;
+        }
+
+        recordHit(node);
+        return node;
+    }
+
+    /**
+     * Returns the entry if it is fresh, without recording an access.
+     */
+    public Entry peekEntry(String key) {
+        Entry node = map.get(key);
+        if (node == null || System.currentTimeMillis() - node.fetchedAtMillis > ttlMillis) {
+            return null;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the entry as long as it has not passed the stale bound, without recording an access.
+     */
+    public Entry peekStale(String key) {
+        Entry node = map.get(key);
+        if (node == null || System.currentTimeMillis() - node.fetchedAtMillis > expireAfterMillis) {
+            return null;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the fresh value without recording an access: no LRU update and no hit/miss metrics.
+     */
+    public WeatherResponse peekIfFresh(String key) {
+        Entry node = peekEntry(key);
+        return node == null ? null : node.getResponse();
+    }
+
+    /**
+     * Marks a cached entry as fetched again at {@code fetchedAtMillis} without replacing it, so its response
+     * and serialized JSON are kept. Returns false if the entry is no longer cached.
+     */
+    public boolean renew(Entry entry, long fetchedAtMillis) {
+        if (map.get(entry.key) != entry) {
+            return false;
+        }
+        entry.fetchedAtMillis = fetchedAtMillis;
+        return true;
+    }
+
+    public Entry put(String key, WeatherResponse response) {
+        return put(key, response, System.currentTimeMillis());
+    }
+
+    /**
+     * Stores a response that was fetched at {@code fetchedAtMillis}, e.g. one restored from disk.
+     */
+    public Entry put(String key, WeatherResponse response, long fetchedAtMillis) {
+        Entry node = compact
+                ? new CompactEntry(key, response, fetchedAtMillis)
+                : new ObjectEntry(key, response, fetchedAtMillis);
+        Entry previous = map.put(key, node);
+
+        policyLock.lock();
+        try {
+            drainBuffers();
+            if (previous != null) {
+                previous.retired = true;
+                unlink(previous);
+            }
+            // a concurrent put of the same key may already have replaced this node
+            if (!node.retired) {
+                linkLast(node);
             }
+            evictIfNeeded();
+        } finally {
+            policyLock.unlock();
         }
+        return node;
     }
 
-    public synchronized Map<String, WeatherResponse> snapshot() {
+    /**
+     * Wraps a response that is not stored in any cache, so callers can use the {@link Entry} accessors on it.
+     */
+    public static Entry detachedEntry(String key, WeatherResponse response) {
+        return new ObjectEntry(key, response, System.currentTimeMillis());
+    }
+
+    public Map<String, WeatherResponse> snapshot() {
         Map<String, WeatherResponse> copy =
                 new LinkedHashMap<String, WeatherResponse>();
-        for (Map.Entry<String, CachedEntry> e : map.entrySet()) {
-            copy.put(e.getKey(), e.getValue().response);
+        for (Map.Entry<String, Entry> e : map.entrySet()) {
+            copy.put(e.getKey(), e.getValue().getResponse());
         }
         return copy;
     }
 
-    private static class CachedEntry {
+    /**
+     * Keys of all cached entries, without building their responses.
+     */
+    public List<String> keys() {
+        return new ArrayList<String>(map.keySet());
+    }
+
+    /**
+     * Visits every entry without copying the cache or blocking writers. The iteration is weakly
+     * consistent: entries added or removed while it runs may or may not be seen.
+     */
+    public void forEach(BiConsumer<String, WeatherResponse> action) {
+        for (Entry node : map.values()) {
+            action.accept(node.key, node.getResponse());
+        }
+    }
+
+    public boolean contains(String key) {
+        return map.containsKey(key);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    private void recordHit(Entry node) {
+        metrics.cacheHit();
+        if (readBuffer.offer(node)) {
+            tryDrain();
+        }
+    }
+
+    private void expire(Entry node) {
+        if (map.remove(node.key, node)) {
+            metrics.cacheExpiry();
+            afterRemoval(node);
+        }
+    }
+
+    private void afterRemoval(Entry node) {
+        node.retired = true;
+        removals.offer(node);
+        tryDrain();
+    }
+
+    private void tryDrain() {
+        if (policyLock.tryLock()) {
+            try {
+                drainBuffers();
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    private void drainBuffers() {
+        readBuffer.drain(this);
+
+        Entry removed;
+        while ((removed = removals.poll()) != null) {
+            unlink(removed);
+        }
+    }
+
+    private void evictIfNeeded() {
+        while (linkedCount > maxSize) {
+            Entry victim = head;
+            unlink(victim);
+            if (map.remove(victim.key, victim)) {
+                victim.retired = true;
+                metrics.cacheEviction();
+            }
+        }
+    }
+
+    private void onRead(Entry node) {
+        if (node.linked && !node.retired) {
+            unlink(node);
+            linkLast(node);
+        }
+    }
+
+    private void linkLast(Entry node) {
+        node.prev = tail;
+        node.next = null;
+        if (tail == null) {
+            head = node;
+        } else {
+            tail.next = node;
+        }
+        tail = node;
+        node.linked = true;
+        linkedCount++;
+    }
+
+    private void unlink(Entry node) {
+        if (!node.linked) {
+            return;
+        }
+        if (node.prev == null) {
+            head = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            tail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        node.linked = false;
+        linkedCount--;
+    }
+
+    /**
+     * A cached response and when it was fetched.
+     */
+    public abstract static class Entry {
+        private final String key;
+        private volatile long fetchedAtMillis;
+        private volatile CacheValidators validators;
+
+        // serialized on first use; racing threads compute the same value
+        private volatile String json;
+        private volatile byte[] jsonBytes;
+
+        private volatile boolean retired;
+
+        // guarded by policyLock
+        private Entry prev;
+        private Entry next;
+        private boolean linked;
+
+        private Entry(String key, long fetchedAtMillis) {
+            this.key = key;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * The cached response. In compact mode every call materializes a new instance.
+         */
+        public abstract WeatherResponse getResponse();
+
+        public long getFetchedAtMillis() {
+            return fetchedAtMillis;
+        }
+
+        /**
+         * Observation time reported by the API, without materializing the response.
+         */
+        public abstract long getDatetime();
+
+        public CacheValidators getValidators() {
+            return validators;
+        }
+
+        public void setValidators(CacheValidators validators) {
+            this.validators = validators;
+        }
+
+        /**
+         * The response as JSON, serialized once per entry.
+         */
+        public String getJson() {
+            String result = json;
+            if (result == null) {
+                result = WeatherJson.toJson(getResponse());
+                json = result;
+            }
+            return result;
+        }
+
+        /**
+         * UTF-8 encoding of {@link #getJson()}, encoded once per entry. The array is shared and must not be modified.
+         */
+        public byte[] getJsonBytes() {
+            byte[] result = jsonBytes;
+            if (result == null) {
+                result = getJson().getBytes(StandardCharsets.UTF_8);
+                jsonBytes = result;
+            }
+            return result;
+        }
+    }
+
+    private static final class ObjectEntry extends Entry {
         private final WeatherResponse response;
-        private final long fetchedAtMillis;
 
-        private CachedEntry(WeatherResponse response, long fetchedAtMillis) {
+        private ObjectEntry(String key, WeatherResponse response, long fetchedAtMillis) {
+            super(key, fetchedAtMillis);
             this.response = response;
-            this.fetchedAtMillis = fetchedAtMillis;
+        }
+
+        @Override
+        public WeatherResponse getResponse() {
+            return response;
+        }
+
+        @Override
+        public long getDatetime() {
+            return response.getDatetime();
+        }
+    }
+
+    /**
+     * Keeps the response flattened into primitive fields instead of a graph of six objects.
+     * Condition strings are shared through {@link #CONDITIONS}.
+     */
+    private static final class CompactEntry extends Entry {
+        private final String name;
+        private final String conditionMain;
+        private final String conditionDescription;
+        private final double temp;
+        private final double feelsLike;
+        private final double windSpeed;
+        private final long datetime;
+        private final long sunrise;
+        private final long sunset;
+        private final long id;
+        private final double lat;
+        private final double lon;
+        private final int visibility;
+        private final int timezone;
+        private final byte present;
+
+        private CompactEntry(String key, WeatherResponse response, long fetchedAtMillis) {
+            super(key, fetchedAtMillis);
+            WeatherInfo weather = response.getWeather();
+            TemperatureInfo temperature = response.getTemperature();
+            WindInfo wind = response.getWind();
+            SysInfo sys = response.getSys();
+            CoordInfo coord = response.getCoord();
+
+            this.name = response.getName();
+            this.conditionMain = weather != null ? CONDITIONS.intern(weather.getMain()) : null;
+            this.conditionDescription = weather != null ? CONDITIONS.intern(weather.getDescription()) : null;
+            this.temp = temperature != null ? temperature.getTemp() : 0.0;
+            this.feelsLike = temperature != null ? temperature.getFeelsLike() : 0.0;
+            this.windSpeed = wind != null ? wind.getSpeed() : 0.0;
+            this.datetime = response.getDatetime();
+            this.sunrise = sys != null ? sys.getSunrise() : 0L;
+            this.sunset = sys != null ? sys.getSunset() : 0L;
+            this.id = response.getId();
+            this.lat = coord != null ? coord.getLat() : 0.0;
+            this.lon = coord != null ? coord.getLon() : 0.0;
+            this.visibility = response.getVisibility();
+            this.timezone = response.getTimezone();
+            this.present = (byte) ((weather != null ? HAS_WEATHER : 0)
+                    | (temperature != null ? HAS_TEMPERATURE : 0)
+                    | (wind != null ? HAS_WIND : 0)
+                    | (sys != null ? HAS_SYS : 0)
+                    | (coord != null ? HAS_COORD : 0));
+        }
+
+        @Override
+        public WeatherResponse getResponse() {
+            WeatherResponse response = new WeatherResponse();
+            response.setName(name);
+            if ((present & HAS_WEATHER) != 0) {
+                response.setWeather(new WeatherInfo(conditionMain, conditionDescription));
+            }
+            if ((present & HAS_TEMPERATURE) != 0) {
+                response.setTemperature(new TemperatureInfo(temp, feelsLike));
+            }
+            if ((present & HAS_WIND) != 0) {
+                response.setWind(new WindInfo(windSpeed));
+            }
+            if ((present & HAS_SYS) != 0) {
+                response.setSys(new SysInfo(sunrise, sunset));
+            }
+            if ((present & HAS_COORD) != 0) {
+                response.setCoord(new CoordInfo(lat, lon));
+            }
+            response.setId(id);
+            response.setDatetime(datetime);
+            response.setVisibility(visibility);
+            response.setTimezone(timezone);
+            return response;
+        }
+
+        @Override
+        public long getDatetime() {
+            return datetime;
+        }
+    }
+
+    /**
+     * Striped ring buffers of recently read nodes. Offers never block: when a stripe is full or
+     * its slot is contended the access is simply not recorded, which only makes LRU approximate.
+     */
+    private static final class ReadBuffer {
+
+        private static final int STRIPE_CAPACITY = 16;
+        private static final int STRIPE_MASK = STRIPE_CAPACITY - 1;
+        private static final int DRAIN_THRESHOLD = STRIPE_CAPACITY / 2;
+
+        private final Stripe[] stripes;
+        private final int stripeMask;
+
+        private ReadBuffer() {
+            int count = 1;
+            int target = Math.min(4 * Runtime.getRuntime().availableProcessors(), 64);
+            while (count < target) {
+                count <<= 1;
+            }
+            this.stripes = new Stripe[count];
+            for (int i = 0; i < count; i++) {
+                stripes[i] = new Stripe();
+            }
+            this.stripeMask = count - 1;
+        }
+
+        /**
+         * @return true if the stripe is full enough that the caller should try to drain
+         */
+        private boolean offer(Entry node) {
+            long id = Thread.currentThread().getId();
+            int probe = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+            return stripes[probe & stripeMask].offer(node);
+        }
+
+        private void drain(WeatherCache cache) {
+            for (Stripe stripe : stripes) {
+                stripe.drain(cache);
+            }
+        }
+    }
+
+    private static final class Stripe {
+
+        private final AtomicReferenceArray<Entry> buffer =
+                new AtomicReferenceArray<Entry>(ReadBuffer.STRIPE_CAPACITY);
+        private final AtomicLong writeCounter = new AtomicLong();
+
+        // written only under policyLock
+        private volatile long readCounter;
+
+        private boolean offer(Entry node) {
+            long read = readCounter;
+            long write = writeCounter.get();
+            long size = write - read;
+            if (size >= ReadBuffer.STRIPE_CAPACITY) {
+                return true;
+            }
+            if (writeCounter.compareAndSet(write, write + 1)) {
+                buffer.lazySet((int) (write & ReadBuffer.STRIPE_MASK), node);
+                return size + 1 >= ReadBuffer.DRAIN_THRESHOLD;
+            }
+            return false;
+        }
+
+        private void drain(WeatherCache cache) {
+            long read = readCounter;
+            long write = writeCounter.get();
+            for (; read < write; read++) {
+                int index = (int) (read & ReadBuffer.STRIPE_MASK);
+                Entry node = buffer.get(index);
+                if (node == null) {
+                    // slot claimed but not yet published; pick it up on the next drain
+                    break;
+                }
+                buffer.lazySet(index, null);
+                cache.onRead(node);
+            }
+            readCounter = read;
         }
     }
 }
@@ -0,0 +1,21 @@
+package com.nbenliogludev.internal;
+
+import com.google.gson.Gson;
+import com.nbenliogludev.model.WeatherResponse;
+
+/**
+ * The SDK's normalized JSON form of {@link WeatherResponse}.
+ *
+ * @author nbenliogludev
+ */
+public final class WeatherJson {
+
+    private static final Gson GSON = new Gson();
+
+    private WeatherJson() {
+    }
+
+    public static String toJson(WeatherResponse response) {
+        return GSON.toJson(response);
+    }
+}
@@ -0,0 +1,242 @@
+package com.nbenliogludev.internal;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.nbenliogludev.model.CoordInfo;
+import com.nbenliogludev.model.SysInfo;
+import com.nbenliogludev.model.TemperatureInfo;
+import com.nbenliogludev.model.WeatherInfo;
+import com.nbenliogludev.model.WeatherResponse;
+import com.nbenliogludev.model.WindInfo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps an OpenWeather "current weather" payload to {@link WeatherResponse} in a single streaming pass.
+ * Only the fields the SDK exposes are read; everything else is skipped without building a tree.
+ *
+ * @author nbenliogludev
+ */
+public class WeatherResponseParser {
+
+    public WeatherResponse parse(InputStream body) throws IOException {
+        return parse(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    public WeatherResponse parse(Reader body) throws IOException {
+        JsonReader reader = new JsonReader(body);
+        try {
+            return readResponse(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Parses a group endpoint payload, {@code {"cnt":2,"list":[{...},{...}]}}, into one response per city.
+     */
+    public List<WeatherResponse> parseGroup(InputStream body) throws IOException {
+        return parseGroup(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    public List<WeatherResponse> parseGroup(Reader body) throws IOException {
+        JsonReader reader = new JsonReader(body);
+        try {
+            List<WeatherResponse> responses = new ArrayList<WeatherResponse>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("list".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        responses.add(readResponse(reader));
+                    }
+                    reader.endArray();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return responses;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private WeatherResponse readResponse(JsonReader reader) throws IOException {
+        WeatherResponse response = new WeatherResponse();
+        double temp = 0.0;
+        double feelsLike = 0.0;
+        double windSpeed = 0.0;
+        long sunrise = 0L;
+        long sunset = 0L;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            switch (field) {
+                case "coord":
+                    response.setCoord(readCoord(reader));
+                    break;
+                case "weather":
+                    response.setWeather(readFirstWeather(reader));
+                    break;
+                case "main":
+                    if (beginObjectOrSkip(reader)) {
+                        while (reader.hasNext()) {
+                            String name = reader.nextName();
+                            if ("temp".equals(name)) {
+                                temp = readDouble(reader);
+                            } else if ("feels_like".equals(name)) {
+                                feelsLike = readDouble(reader);
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    break;
+                case "visibility":
+                    response.setVisibility((int) readLong(reader));
+                    break;
+                case "wind":
+                    if (beginObjectOrSkip(reader)) {
+                        while (reader.hasNext()) {
+                            if ("speed".equals(reader.nextName())) {
+                                windSpeed = readDouble(reader);
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    break;
+                case "dt":
+                    response.setDatetime(readLong(reader));
+                    break;
+                case "sys":
+                    if (beginObjectOrSkip(reader)) {
+                        while (reader.hasNext()) {
+                            String name = reader.nextName();
+                            if ("sunrise".equals(name)) {
+                                sunrise = readLong(reader);
+                            } else if ("sunset".equals(name)) {
+                                sunset = readLong(reader);
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    break;
+                case "timezone":
+                    response.setTimezone((int) readLong(reader));
+                    break;
+                case "name":
+                    response.setName(readString(reader));
+                    break;
+                case "id":
+                    response.setId(readLong(reader));
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        response.setTemperature(new TemperatureInfo(temp, feelsLike));
+        response.setWind(new WindInfo(windSpeed));
+        response.setSys(new SysInfo(sunrise, sunset));
+        return response;
+    }
+
+    private CoordInfo readCoord(JsonReader reader) throws IOException {
+        if (!beginObjectOrSkip(reader)) {
+            return null;
+        }
+        double lat = 0.0;
+        double lon = 0.0;
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("lat".equals(name)) {
+                lat = readDouble(reader);
+            } else if ("lon".equals(name)) {
+                lon = readDouble(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new CoordInfo(lat, lon);
+    }
+
+    private WeatherInfo readFirstWeather(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+
+        WeatherInfo info = null;
+        reader.beginArray();
+        if (reader.hasNext()) {
+            String main = null;
+            String description = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("main".equals(name)) {
+                    main = readString(reader);
+                } else if ("description".equals(name)) {
+                    description = readString(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            info = new WeatherInfo(main, description);
+        }
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endArray();
+        return info;
+    }
+
+    private boolean beginObjectOrSkip(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            return true;
+        }
+        reader.skipValue();
+        return false;
+    }
+
+    private String readString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private double readDouble(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return 0.0;
+        }
+        return reader.nextDouble();
+    }
+
+    private long readLong(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return 0L;
+        }
+        return reader.nextLong();
+    }
+}
@@ -0,0 +1,126 @@
+package com.nbenliogludev.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link WeatherMetrics} adapter for Micrometer. Requires {@code io.micrometer:micrometer-core} on the classpath.
+ * <p>
+ * Counters are registered up front and upstream timers are created once per status code,
+ * so recording never allocates after warm-up.
+ *
+ * @author nbenliogludev
+ */
+public class MicrometerWeatherMetrics implements WeatherMetrics {
+
+    private static final int MAX_STATUS_CODE = 599;
+
+    private final MeterRegistry registry;
+    private final Tags tags;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter cacheEvictions;
+    private final Counter cacheExpiries;
+    private final AtomicReferenceArray<Timer> upstreamTimers =
+            new AtomicReferenceArray<Timer>(MAX_STATUS_CODE + 1);
+    private final Timer parseTimer;
+    private final DistributionSummary payloadBytes;
+    private final Timer pollingTimer;
+    private final Counter pollingRefreshes;
+    private final Counter pollingFailures;
+
+    public MicrometerWeatherMetrics(MeterRegistry registry) {
+        this(registry, Tags.empty());
+    }
+
+    /**
+     * @param tags extra tags added to every meter, e.g. to tell several clients apart
+     */
+    public MicrometerWeatherMetrics(MeterRegistry registry, Iterable<Tag> tags) {
+        this.registry = registry;
+        this.tags = Tags.of(tags);
+
+        this.cacheHits = cacheCounter("hit");
+        this.cacheMisses = cacheCounter("miss");
+        this.cacheEvictions = Counter.builder("weather.cache.removals")
+                .tags(this.tags).tag("cause", "eviction").register(registry);
+        this.cacheExpiries = Counter.builder("weather.cache.removals")
+                .tags(this.tags).tag("cause", "expiry").register(registry);
+        this.parseTimer = Timer.builder("weather.response.parse")
+                .tags(this.tags).register(registry);
+        this.payloadBytes = DistributionSummary.builder("weather.response.payload")
+                .baseUnit("bytes").tags(this.tags).register(registry);
+        this.pollingTimer = Timer.builder("weather.polling.cycle")
+                .tags(this.tags).register(registry);
+        this.pollingRefreshes = Counter.builder("weather.polling.refreshes")
+                .tags(this.tags).tag("outcome", "success").register(registry);
+        this.pollingFailures = Counter.builder("weather.polling.refreshes")
+                .tags(this.tags).tag("outcome", "failure").register(registry);
+    }
+
+    @Override
+    public void cacheHit() {
+        cacheHits.increment();
+    }
+
+    @Override
+    public void cacheMiss() {
+        cacheMisses.increment();
+    }
+
+    @Override
+    public void cacheEviction() {
+        cacheEvictions.increment();
+    }
+
+    @Override
+    public void cacheExpiry() {
+        cacheExpiries.increment();
+    }
+
+    @Override
+    public void upstreamRequest(int statusCode, long durationNanos) {
+        upstreamTimer(statusCode).record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void responseParsed(long durationNanos, long bytes) {
+        parseTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+        payloadBytes.record(bytes);
+    }
+
+    @Override
+    public void pollingCycle(long durationNanos, int refreshed, int failures) {
+        pollingTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+        pollingRefreshes.increment(refreshed);
+        pollingFailures.increment(failures);
+    }
+
+    private Counter cacheCounter(String result) {
+        return Counter.builder("weather.cache.requests")
+                .tags(tags).tag("result", result).register(registry);
+    }
+
+    private Timer upstreamTimer(int statusCode) {
+        int index = (statusCode < 0 || statusCode > MAX_STATUS_CODE) ? NO_RESPONSE : statusCode;
+        Timer timer = upstreamTimers.get(index);
+        if (timer == null) {
+            String status = index == NO_RESPONSE ? "none" : Integer.toString(index);
+            // registering the same id twice returns the existing meter, so a lost race is harmless
+            timer = Timer.builder("weather.upstream.requests")
+                    .tags(tags).tag("status", status)
+                    .publishPercentileHistogram()
+                    .register(registry);
+            upstreamTimers.set(index, timer);
+        }
+        return timer;
+    }
+}
@@ -0,0 +1,41 @@
+package com.nbenliogludev.metrics;
+
+/**
+ * Default {@link WeatherMetrics} that discards everything.
+ *
+ * @author nbenliogludev
+ */
+public final class NoopWeatherMetrics implements WeatherMetrics {
+
+    public static final NoopWeatherMetrics INSTANCE = new NoopWeatherMetrics();
+
+    private NoopWeatherMetrics() {}
+
+    @Override
+    public void cacheHit() {
+    }
+
+    @Override
+    public void cacheMiss() {
+    }
+
+    @Override
+    public void cacheEviction() {
+    }
+
+    @Override
+    public void cacheExpiry() {
+    }
+
+    @Override
+    public void upstreamRequest(int statusCode, long durationNanos) {
+    }
+
+    @Override
+    public void responseParsed(long durationNanos, long payloadBytes) {
+    }
+
+    @Override
+    public void pollingCycle(long durationNanos, int refreshed, int failures) {
+    }
+}
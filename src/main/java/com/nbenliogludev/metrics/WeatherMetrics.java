@@ -0,0 +1,33 @@
+package com.nbenliogludev.metrics;
+
+/**
+ * Receives measurements from the SDK hot paths. Implementations must be thread-safe, and the
+ * cache callbacks are invoked on every lookup, so they should not allocate or block.
+ *
+ * @author nbenliogludev
+ */
+public interface WeatherMetrics {
+
+    /**
+     * Status code reported by {@link #upstreamRequest} when no HTTP response was received.
+     */
+    int NO_RESPONSE = 0;
+
+    void cacheHit();
+
+    void cacheMiss();
+
+    void cacheEviction();
+
+    void cacheExpiry();
+
+    /**
+     * @param statusCode     HTTP status, or {@link #NO_RESPONSE} on a network failure
+     * @param durationNanos  time until the response status was available
+     */
+    void upstreamRequest(int statusCode, long durationNanos);
+
+    void responseParsed(long durationNanos, long payloadBytes);
+
+    void pollingCycle(long durationNanos, int refreshed, int failures);
+}
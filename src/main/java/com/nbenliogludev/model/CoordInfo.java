@@ -0,0 +1,34 @@
+package com.nbenliogludev.model;
+
+/**
+ * @author nbenliogludev
+ */
+public class CoordInfo {
+
+    private double lat;
+    private double lon;
+
+    public CoordInfo() {
+    }
+
+    public CoordInfo(double lat, double lon) {
+        this.lat = lat;
+        this.lon = lon;
+    }
+
+    public double getLat() {
+        return lat;
+    }
+
+    public void setLat(double lat) {
+        this.lat = lat;
+    }
+
+    public double getLon() {
+        return lon;
+    }
+
+    public void setLon(double lon) {
+        this.lon = lon;
+    }
+}
@@ -0,0 +1,102 @@
+package com.nbenliogludev.model;
+
+/**
+ * Observations of one city over a time range, oldest first, held as parallel primitive arrays.
+ * Missing values are {@code NaN} and left out of the aggregates, which are {@code NaN} for an empty history.
+ *
+ * @author nbenliogludev
+ */
+public class WeatherHistory {
+
+    private final long[] datetimes;
+    private final float[] temperatures;
+    private final float[] feelsLike;
+    private final float[] windSpeeds;
+
+    public WeatherHistory(long[] datetimes, float[] temperatures, float[] feelsLike, float[] windSpeeds) {
+        this.datetimes = datetimes;
+        this.temperatures = temperatures;
+        this.feelsLike = feelsLike;
+        this.windSpeeds = windSpeeds;
+    }
+
+    public int size() {
+        return datetimes.length;
+    }
+
+    public boolean isEmpty() {
+        return datetimes.length == 0;
+    }
+
+    /**
+     * Observation time of the {@code i}-th observation, in Unix seconds as reported by the API.
+     */
+    public long getDatetime(int i) {
+        return datetimes[i];
+    }
+
+    public double getTemperature(int i) {
+        return temperatures[i];
+    }
+
+    public double getFeelsLike(int i) {
+        return feelsLike[i];
+    }
+
+    public double getWindSpeed(int i) {
+        return windSpeeds[i];
+    }
+
+    public double getMinTemperature() {
+        return min(temperatures);
+    }
+
+    public double getMaxTemperature() {
+        return max(temperatures);
+    }
+
+    public double getAverageTemperature() {
+        return average(temperatures);
+    }
+
+    public double getMaxWindSpeed() {
+        return max(windSpeeds);
+    }
+
+    public double getAverageWindSpeed() {
+        return average(windSpeeds);
+    }
+
+    // observations without the value, stored as NaN, are left out
+    private static double min(float[] values) {
+        double min = Double.NaN;
+        for (float value : values) {
+            if (!Float.isNaN(value) && (Double.isNaN(min) || value < min)) {
+                min = value;
+            }
+        }
+        return min;
+    }
+
+    private static double max(float[] values) {
+        double max = Double.NaN;
+        for (float value : values) {
+            if (!Float.isNaN(value) && (Double.isNaN(max) || value > max)) {
+                max = value;
+            }
+        }
+        return max;
+    }
+
+    private static double average(float[] values) {
+        double sum = 0.0;
+        int count = 0;
+        for (float value : values) {
+            if (!Float.isNaN(value)) {
+                sum += value;
+                count++;
+            }
+        }
+        return count == 0 ? Double.NaN : sum / count;
+    }
+}
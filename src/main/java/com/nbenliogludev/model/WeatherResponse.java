@@ -13,6 +13,8 @@ public class WeatherResponse {
     private SysInfo sys;
     private int timezone;
     private String name;
+    private long id;
+    private CoordInfo coord;
 
     public WeatherInfo getWeather() {
         return weather;
@@ -77,4 +79,26 @@ public class WeatherResponse {
     public void setName(String name) {
         this.name = name;
     }
+
+    /**
+     * OpenWeather city ID, {@code 0} if the API did not report one.
+     */
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Coordinates of the weather station's city, or null if the API did not report them.
+     */
+    public CoordInfo getCoord() {
+        return coord;
+    }
+
+    public void setCoord(CoordInfo coord) {
+        this.coord = coord;
+    }
 }
@@ -0,0 +1,71 @@
+package com.nbenliogludev.subscription;
+
+import com.nbenliogludev.model.TemperatureInfo;
+import com.nbenliogludev.model.WeatherInfo;
+import com.nbenliogludev.model.WeatherResponse;
+import com.nbenliogludev.model.WindInfo;
+
+/**
+ * How much a city's weather must change before subscribers are told. A change of condition always counts;
+ * temperature and wind speed count once they differ from the last delivered values by at least the threshold,
+ * in the units of the responses.
+ *
+ * @author nbenliogludev
+ */
+public final class ChangeThresholds {
+
+    /**
+     * Half a degree of temperature or 1 m/s of wind speed.
+     */
+    public static final ChangeThresholds DEFAULT = new ChangeThresholds(0.5, 1.0);
+
+    private final double temperature;
+    private final double windSpeed;
+
+    public ChangeThresholds(double temperature, double windSpeed) {
+        if (!(temperature >= 0) || !(windSpeed >= 0)) {
+            throw new IllegalArgumentException("Thresholds must not be negative");
+        }
+        this.temperature = temperature;
+        this.windSpeed = windSpeed;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    public double getWindSpeed() {
+        return windSpeed;
+    }
+
+    public boolean isChange(WeatherResponse previous, WeatherResponse current) {
+        WeatherInfo before = previous.getWeather();
+        WeatherInfo after = current.getWeather();
+        if (before == null || after == null) {
+            if (before != after) {
+                return true;
+            }
+        } else if (!equal(before.getMain(), after.getMain())
+                || !equal(before.getDescription(), after.getDescription())) {
+            return true;
+        }
+
+        TemperatureInfo t1 = previous.getTemperature();
+        TemperatureInfo t2 = current.getTemperature();
+        if (t1 != null && t2 != null && exceeds(t1.getTemp(), t2.getTemp(), temperature)) {
+            return true;
+        }
+        WindInfo w1 = previous.getWind();
+        WindInfo w2 = current.getWind();
+        return w1 != null && w2 != null && exceeds(w1.getSpeed(), w2.getSpeed(), windSpeed);
+    }
+
+    private static boolean exceeds(double before, double after, double threshold) {
+        double delta = Math.abs(after - before);
+        return delta > 0 && delta >= threshold;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
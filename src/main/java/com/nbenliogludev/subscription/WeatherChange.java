@@ -0,0 +1,37 @@
+package com.nbenliogludev.subscription;
+
+import com.nbenliogludev.model.WeatherResponse;
+
+/**
+ * A meaningful change of a subscribed city: {@code previous} is the response last delivered to the
+ * listener, or the one current when it subscribed.
+ *
+ * @author nbenliogludev
+ */
+public final class WeatherChange {
+
+    private final String city;
+    private final WeatherResponse previous;
+    private final WeatherResponse current;
+
+    public WeatherChange(String city, WeatherResponse previous, WeatherResponse current) {
+        this.city = city;
+        this.previous = previous;
+        this.current = current;
+    }
+
+    /**
+     * The city as passed to {@code subscribe}.
+     */
+    public String getCity() {
+        return city;
+    }
+
+    public WeatherResponse getPrevious() {
+        return previous;
+    }
+
+    public WeatherResponse getCurrent() {
+        return current;
+    }
+}
@@ -0,0 +1,12 @@
+package com.nbenliogludev.subscription;
+
+/**
+ * Receives the changes of a subscribed city. Called on the client's notification thread, one change at a
+ * time; implementations should return quickly and hand slow work to their own executor.
+ *
+ * @author nbenliogludev
+ */
+public interface WeatherListener {
+
+    void onChange(WeatherChange change);
+}
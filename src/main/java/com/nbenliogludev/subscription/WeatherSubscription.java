@@ -0,0 +1,12 @@
+package com.nbenliogludev.subscription;
+
+/**
+ * @author nbenliogludev
+ */
+public interface WeatherSubscription {
+
+    /**
+     * Stops delivery to the listener. A change that is already being delivered may still arrive.
+     */
+    void cancel();
+}
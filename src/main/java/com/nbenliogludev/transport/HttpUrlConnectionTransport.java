@@ -0,0 +1,151 @@
+package com.nbenliogludev.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default transport on top of {@link HttpURLConnection}.
+ * <p>
+ * Connections are never {@code disconnect()}ed: closing a response drains and closes the body,
+ * which returns the socket (and its TLS session) to the JDK keep-alive cache for the next request
+ * to the same host. The number of connections in use per host is capped by a semaphore; how many
+ * idle connections the JDK keeps per host is governed by the {@code http.maxConnections} system
+ * property (default 5).
+ *
+ * @author nbenliogludev
+ */
+public class HttpUrlConnectionTransport implements WeatherTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpUrlConnectionTransport.class);
+
+    private static final int DRAIN_BUFFER_SIZE = 512;
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final int maxConnectionsPerHost;
+
+    private final ConcurrentHashMap<String, Semaphore> permitsByHost =
+            new ConcurrentHashMap<String, Semaphore>();
+
+    public HttpUrlConnectionTransport(int connectTimeoutMillis, int readTimeoutMillis, int maxConnectionsPerHost) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    @Override
+    public WeatherHttpResponse execute(WeatherHttpRequest request) throws IOException {
+        URL url = new URL(request.getUrl());
+        Semaphore permits = permitsFor(url);
+        acquire(permits, url);
+
+        try {
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setRequestMethod("GET");
+            conn.setConnectTimeout(connectTimeoutMillis);
+            conn.setReadTimeout(readTimeoutMillis);
+            for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+                conn.setRequestProperty(header.getKey(), header.getValue());
+            }
+
+            int status = conn.getResponseCode();
+            InputStream stream = (status >= 200 && status < 300)
+                    ? conn.getInputStream()
+                    : conn.getErrorStream();
+            if (stream == null) {
+                stream = new ByteArrayInputStream(new byte[0]);
+            }
+
+            return new WeatherHttpResponse(status, headersOf(conn), new ReleasingInputStream(stream, permits));
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        // idle connections belong to the JDK keep-alive cache, which closes them on its own timeout
+    }
+
+    private Semaphore permitsFor(URL url) {
+        String host = url.getProtocol() + "://" + url.getHost() + ":" + url.getPort();
+        Semaphore permits = permitsByHost.get(host);
+        if (permits == null) {
+            Semaphore created = new Semaphore(maxConnectionsPerHost);
+            permits = permitsByHost.putIfAbsent(host, created);
+            if (permits == null) {
+                permits = created;
+            }
+        }
+        return permits;
+    }
+
+    private void acquire(Semaphore permits, URL url) throws IOException {
+        try {
+            if (!permits.tryAcquire(connectTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out waiting for a free connection to " + url.getHost());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a connection to " + url.getHost(), e);
+        }
+    }
+
+    private static Map<String, String> headersOf(HttpURLConnection conn) {
+        Map<String, String> headers = new HashMap<String, String>();
+        for (Map.Entry<String, List<String>> header : conn.getHeaderFields().entrySet()) {
+            // the status line is reported under a null name
+            if (header.getKey() != null && !header.getValue().isEmpty()) {
+                headers.put(header.getKey(), header.getValue().get(0));
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Drains the rest of the body on close so the connection can be reused, then frees the host permit.
+     */
+    private static final class ReleasingInputStream extends FilterInputStream {
+
+        private final Semaphore permits;
+        private boolean closed;
+
+        private ReleasingInputStream(InputStream in, Semaphore permits) {
+            super(in);
+            this.permits = permits;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                byte[] skip = new byte[DRAIN_BUFFER_SIZE];
+                while (in.read(skip) != -1) {
+                    // discard
+                }
+                in.close();
+            } catch (IOException e) {
+                log.debug("Failed to drain response body, connection will not be reused", e);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+}
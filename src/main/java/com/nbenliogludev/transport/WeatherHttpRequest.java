@@ -0,0 +1,33 @@
+package com.nbenliogludev.transport;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @author nbenliogludev
+ */
+public final class WeatherHttpRequest {
+
+    private final String url;
+    private final Map<String, String> headers;
+
+    public WeatherHttpRequest(String url) {
+        this(url, Collections.<String, String>emptyMap());
+    }
+
+    public WeatherHttpRequest(String url, Map<String, String> headers) {
+        this.url = url;
+        this.headers = headers.isEmpty()
+                ? Collections.<String, String>emptyMap()
+                : Collections.unmodifiableMap(new LinkedHashMap<String, String>(headers));
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+}
@@ -0,0 +1,54 @@
+package com.nbenliogludev.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Status, headers and streamed body of an HTTP response. Must be closed after the body is consumed.
+ *
+ * @author nbenliogludev
+ */
+public class WeatherHttpResponse implements Closeable {
+
+    private final int statusCode;
+    private final Map<String, String> headers;
+    private final InputStream body;
+
+    /**
+     * @param headers response headers; names are matched case-insensitively
+     * @param body    response body, may be null for an empty body
+     */
+    public WeatherHttpResponse(int statusCode, Map<String, String> headers, InputStream body) {
+        this.statusCode = statusCode;
+        if (headers.isEmpty()) {
+            this.headers = Collections.emptyMap();
+        } else {
+            Map<String, String> copy = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+            copy.putAll(headers);
+            this.headers = Collections.unmodifiableMap(copy);
+        }
+        this.body = body != null ? body : new ByteArrayInputStream(new byte[0]);
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    public InputStream getBody() {
+        return body;
+    }
+
+    @Override
+    public void close() throws IOException {
+        body.close();
+    }
+}
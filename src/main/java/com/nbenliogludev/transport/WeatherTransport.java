@@ -0,0 +1,24 @@
+package com.nbenliogludev.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * SPI for the HTTP layer used by the SDK. Implementations must be thread-safe.
+ *
+ * @author nbenliogludev
+ */
+public interface WeatherTransport extends Closeable {
+
+    /**
+     * Performs a GET request. The caller closes the returned response, which hands the
+     * underlying connection back for reuse.
+     */
+    WeatherHttpResponse execute(WeatherHttpRequest request) throws IOException;
+
+    /**
+     * Releases pooled resources. Called by the client that created the transport.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,637 @@
+package com.nbenliogludev;
+
+import com.nbenliogludev.exception.WeatherApiException;
+import com.nbenliogludev.exception.WeatherNotFoundException;
+import com.nbenliogludev.exception.WeatherParsingException;
+import com.nbenliogludev.exception.WeatherSdkException;
+import com.nbenliogludev.exception.WeatherUnavailableException;
+import com.nbenliogludev.model.WeatherHistory;
+import com.nbenliogludev.model.WeatherResponse;
+import com.nbenliogludev.subscription.ChangeThresholds;
+import com.nbenliogludev.subscription.WeatherChange;
+import com.nbenliogludev.subscription.WeatherSubscription;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Client behaviour against an in-process stub of the OpenWeather API.
+ *
+ * @author nbenliogludev
+ */
+class DefaultWeatherClientTest {
+
+    private static final String API_KEY = "stub-key";
+
+    private StubWeatherServer server;
+    private WeatherClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubWeatherServer()
+                .respondWithResource("London", "london.json")
+                .respondWithResource("Paris", "paris.json")
+                .respondToIdWithResource(2643743L, "london.json");
+    }
+
+    @AfterEach
+    void tearDown() {
+        WeatherClients.destroy(API_KEY);
+        server.close();
+    }
+
+    @Test
+    void secondCallIsServedFromCache() throws WeatherSdkException {
+        client = newClient().build();
+
+        WeatherResponse first = client.getCurrentWeather("London");
+        WeatherResponse second = client.getCurrentWeather(" london ");
+
+        assertEquals("London", first.getName());
+        assertEquals("Clouds", first.getWeather().getMain());
+        assertEquals(284.2, first.getTemperature().getTemp(), 1e-9);
+        assertSame(first, second);
+        assertEquals(1, server.requestCount());
+    }
+
+    @Test
+    void jsonIsSerializedOncePerCachedResponse() throws Exception {
+        client = newClient().build();
+
+        String first = client.getCurrentWeatherJson("London");
+        String second = client.getCurrentWeatherJson("london");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        client.writeCurrentWeatherJson("London", bytes);
+        StringBuilder appended = new StringBuilder();
+        client.appendCurrentWeatherJson("London", appended);
+
+        assertTrue(first.contains("\"name\":\"London\""));
+        assertSame(first, second);
+        assertEquals(first, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(first, appended.toString());
+        assertEquals(1, server.requestCount());
+    }
+
+    @Test
+    void nameIdAndNearbyCoordinatesShareOneCacheEntry() throws WeatherSdkException {
+        server.respondToIdWithResource(2643743L, "london.json")
+                .respondToCoordinatesWithResource("london.json");
+        client = newClient().build();
+
+        WeatherResponse byName = client.getCurrentWeather("London");
+        WeatherResponse byId = client.getCurrentWeatherById(2643743L);
+        WeatherResponse byCoordinates = client.getCurrentWeather(51.5085, -0.1257);
+
+        assertSame(byName, byId);
+        assertSame(byName, byCoordinates);
+        assertEquals(1, server.requestCount());
+    }
+
+    @Test
+    void sameNameInAnotherCountryDoesNotReplaceTheCity() throws WeatherSdkException {
+        server.respond("London,CA", 200, StubWeatherServer.resource("london.json")
+                .replace("\"lon\":-0.1257,\"lat\":51.5085", "\"lon\":-81.2497,\"lat\":42.9834")
+                .replace("\"country\":\"GB\"", "\"country\":\"CA\"")
+                .replace("2643743", "6058560"));
+        client = newClient().build();
+
+        assertEquals(6058560L, client.getCurrentWeather("London,CA").getId());
+        assertEquals(2643743L, client.getCurrentWeather("London").getId());
+        assertEquals(6058560L, client.getCurrentWeather("london,ca").getId());
+        assertEquals(2, server.requestCount());
+    }
+
+    @Test
+    void nearbyCoordinatesReuseOneUpstreamCall() throws WeatherSdkException {
+        server.respondToCoordinatesWithResource("london.json");
+        client = newClient().geoCellSize(0.1).build();
+
+        WeatherResponse first = client.getCurrentWeather(51.41, -0.15);
+        WeatherResponse nearby = client.getCurrentWeather(51.44, -0.19);
+        WeatherResponse byId = client.getCurrentWeatherById(2643743L);
+
+        assertEquals(2643743L, first.getId());
+        assertSame(first, nearby);
+        assertSame(first, byId);
+        assertEquals(1, server.coordinateRequestCount());
+        assertEquals(0, server.requestCountForId(2643743L));
+    }
+
+    @Test
+    void invalidCoordinatesAndIdsAreRejected() throws WeatherSdkException {
+        client = newClient().build();
+
+        assertThrows(WeatherSdkException.class, () -> client.getCurrentWeather(91.0, 0.0));
+        assertThrows(WeatherSdkException.class, () -> client.getCurrentWeather(0.0, Double.NaN));
+        assertThrows(WeatherSdkException.class, () -> client.getCurrentWeatherById(0L));
+        assertEquals(0, server.requestCount());
+    }
+
+    @Test
+    void idLookupsWithinTheWindowShareOneGroupCall() throws Exception {
+        server.respondToIdWithResource(2988507L, "paris.json");
+        client = newClient().groupRequests(200, TimeUnit.MILLISECONDS).build();
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            Future<WeatherResponse> london = callers.submit(() -> client.getCurrentWeatherById(2643743L));
+            Future<WeatherResponse> paris = callers.submit(() -> client.getCurrentWeatherById(2988507L));
+            Future<WeatherResponse> unknown = callers.submit(() -> client.getCurrentWeatherById(1L));
+
+            assertEquals("London", london.get(5, TimeUnit.SECONDS).getName());
+            assertEquals("Paris", paris.get(5, TimeUnit.SECONDS).getName());
+            ExecutionException error = assertThrows(ExecutionException.class, () -> unknown.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(WeatherNotFoundException.class, error.getCause());
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertEquals(1, server.requestCount());
+        assertEquals(1, server.groupRequestCount());
+        assertSame(client.getCurrentWeatherById(2643743L), client.getCurrentWeather("London"));
+    }
+
+    @Test
+    void pollingRefreshesCachedCitiesWithGroupCalls() throws Exception {
+        server.respondToIdWithResource(2988507L, "paris.json");
+        client = newClient()
+                .mode(Mode.POLLING)
+                .pollingInterval(300, TimeUnit.MILLISECONDS)
+                .groupRequests(10, TimeUnit.MILLISECONDS)
+                .build();
+        client.getCurrentWeather("London");
+        client.getCurrentWeather("Paris");
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.groupRequestCount() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10L);
+        }
+
+        // both cities are refreshed by each group call instead of one call per city
+        assertTrue(server.groupRequestCount() >= 2);
+        assertEquals(1, server.requestCount("London"));
+        assertEquals(1, server.requestCount("Paris"));
+        assertEquals(0, server.requestCountForId(2643743L) + server.requestCountForId(2988507L));
+    }
+
+    @Test
+    void missByNameJoinsTheRefreshOfTheSameCity() throws Exception {
+        client = newClient()
+                .mode(Mode.POLLING)
+                .pollingInterval(300, TimeUnit.MILLISECONDS)
+                .pollingRateLimit(6000)
+                .cacheTtl(100, TimeUnit.MILLISECONDS)
+                .build();
+        client.getCurrentWeather("London");
+        server.delay(500);
+        // the entry has expired by the time polling refreshes it by city ID
+        awaitRequests(2);
+
+        assertEquals("London", client.getCurrentWeather("London").getName());
+        assertEquals(1, server.requestCount("London"));
+        assertEquals(1, ((DefaultWeatherClient) client).getCoalescedRequestCount());
+    }
+
+    @Test
+    void subscribersAreNotifiedOfMeaningfulChangesOnly() throws Exception {
+        client = newClient()
+                .mode(Mode.POLLING)
+                .pollingInterval(100, TimeUnit.MILLISECONDS)
+                .build();
+        BlockingQueue<WeatherChange> changes = new LinkedBlockingQueue<>();
+        WeatherSubscription subscription = client.subscribe("London", new ChangeThresholds(1.0, 5.0), changes::add);
+
+        String london = StubWeatherServer.resource("london.json");
+        server.respondToId(2643743L, 200, london.replace("1729245600", "1729246200").replace("284.2", "284.5"));
+        awaitRequestsAtLeast(3);
+        assertNull(changes.poll(200, TimeUnit.MILLISECONDS));
+
+        server.respondToId(2643743L, 200, london.replace("1729245600", "1729246800").replace("284.2", "286.0"));
+        WeatherChange change = changes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(change);
+        assertEquals("London", change.getCity());
+        assertEquals(284.2, change.getPrevious().getTemperature().getTemp(), 1e-9);
+        assertEquals(286.0, change.getCurrent().getTemperature().getTemp(), 1e-9);
+
+        subscription.cancel();
+        server.respondToId(2643743L, 200, london.replace("1729245600", "1729247400").replace("284.2", "290.0"));
+        int requests = server.requestCount();
+        awaitRequestsAtLeast(requests + 2);
+        assertNull(changes.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void subscriptionsRequirePollingMode() throws WeatherSdkException {
+        client = newClient().build();
+
+        assertThrows(WeatherSdkException.class, () -> client.subscribe("London", change -> { }));
+    }
+
+    @Test
+    void gzipResponsesAreDecoded() throws WeatherSdkException {
+        server.gzip(true);
+        client = newClient().build();
+
+        assertEquals(284.2, client.getCurrentWeather("London").getTemperature().getTemp(), 1e-9);
+        WeatherNotFoundException ex = assertThrows(WeatherNotFoundException.class, () ->
+                client.getCurrentWeather("Atlantis"));
+        assertTrue(ex.getMessage().contains("city not found"));
+        assertEquals(2, server.gzippedCount());
+    }
+
+    @Test
+    void compressionCanBeDisabled() throws WeatherSdkException {
+        server.gzip(true);
+        client = newClient().compression(false).build();
+
+        assertEquals("London", client.getCurrentWeather("London").getName());
+        assertEquals(0, server.gzippedCount());
+    }
+
+    @Test
+    void historyRecordsEachNewObservation() throws Exception {
+        client = newClient().cacheTtl(100, TimeUnit.MILLISECONDS).history(10).build();
+        client.getCurrentWeather("London");
+        Thread.sleep(150L);
+        server.respond("London", 200, StubWeatherServer.resource("london.json")
+                .replace("1729245600", "1729246200").replace("\"temp\":284.2", "\"temp\":286.2"));
+        client.getCurrentWeather("London");
+
+        WeatherHistory history = client.getHistory("london", 0L, Long.MAX_VALUE);
+        assertEquals(2, history.size());
+        assertEquals(1729246200L, history.getDatetime(1));
+        assertEquals(285.2, history.getAverageTemperature(), 1e-4);
+        assertEquals(1, client.getHistory("London", 1729246200L, Long.MAX_VALUE).size());
+        assertTrue(client.getHistory("Paris", 0L, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    void historyMustBeEnabled() throws WeatherSdkException {
+        client = newClient().build();
+
+        assertThrows(WeatherSdkException.class, () -> client.getHistory("London", 0L, Long.MAX_VALUE));
+    }
+
+    @Test
+    void unknownCityThrowsNotFound() throws WeatherSdkException {
+        client = newClient().build();
+
+        WeatherNotFoundException ex = assertThrows(WeatherNotFoundException.class, () ->
+                client.getCurrentWeather("Atlantis"));
+
+        assertTrue(ex.getMessage().contains("city not found"));
+    }
+
+    @Test
+    void serverErrorThrowsApiException() throws WeatherSdkException {
+        server.respond("Berlin", 500, "{\"cod\":500,\"message\":\"internal error\"}");
+        client = newClient().build();
+
+        WeatherApiException ex = assertThrows(WeatherApiException.class, () ->
+                client.getCurrentWeather("Berlin"));
+
+        assertEquals(500, ex.getStatusCode());
+    }
+
+    @Test
+    void transientFailuresAreRetried() throws WeatherSdkException {
+        server.failNext(2, 503);
+        client = newClient().retries(2, 10, TimeUnit.MILLISECONDS).build();
+
+        assertEquals("London", client.getCurrentWeather("London").getName());
+        assertEquals(3, server.requestCount());
+    }
+
+    @Test
+    void rateLimitIsOnlyRetriedAfterRetryAfter() throws WeatherSdkException {
+        client = newClient()
+                .retries(2, 10, TimeUnit.MILLISECONDS)
+                .circuitBreaker(1, 1, TimeUnit.MINUTES)
+                .build();
+
+        server.failNext(1, 429);
+        WeatherApiException ex = assertThrows(WeatherApiException.class, () -> client.getCurrentWeather("London"));
+        assertEquals(429, ex.getStatusCode());
+        assertEquals(1, server.requestCount());
+
+        server.failNext(1, 429, "1");
+        long start = System.nanoTime();
+        assertEquals("London", client.getCurrentWeather("London").getName());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 1000L);
+        // neither 429 opened the circuit, which trips after a single failure here
+        assertEquals(3, server.requestCount());
+    }
+
+    @Test
+    void backoffDoesNotHoldABulkheadPermit() throws Exception {
+        server.failNext(1, 503);
+        client = newClient()
+                .maxConcurrentRequests(1)
+                .retries(1, 600, TimeUnit.MILLISECONDS)
+                .build();
+        ExecutorService callers = Executors.newFixedThreadPool(1);
+        try {
+            Future<WeatherResponse> london = callers.submit(() -> client.getCurrentWeather("London"));
+            awaitRequests(1);
+            // let London read the 503 and release its permit; it then waits at least 300 ms before its retry
+            Thread.sleep(100L);
+
+            assertEquals("Paris", client.getCurrentWeather("Paris").getName());
+            assertEquals("London", london.get(5, TimeUnit.SECONDS).getName());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void openCircuitFailsFastWithoutCallingTheApi() throws WeatherSdkException {
+        server.respond("Berlin", 500, "{\"cod\":500,\"message\":\"internal error\"}");
+        client = newClient()
+                .retries(0, 0, TimeUnit.MILLISECONDS)
+                .circuitBreaker(2, 1, TimeUnit.MINUTES)
+                .build();
+
+        assertThrows(WeatherApiException.class, () -> client.getCurrentWeather("Berlin"));
+        assertThrows(WeatherApiException.class, () -> client.getCurrentWeather("Berlin"));
+        assertThrows(WeatherUnavailableException.class, () -> client.getCurrentWeather("London"));
+
+        assertEquals(2, server.requestCount());
+    }
+
+    @Test
+    void staleResponseIsServedWhileTheApiFails() throws Exception {
+        client = newClient()
+                .cacheTtl(100, TimeUnit.MILLISECONDS)
+                .staleIfError(1, TimeUnit.MINUTES)
+                .retries(0, 0, TimeUnit.MILLISECONDS)
+                .build();
+        WeatherResponse first = client.getCurrentWeather("London");
+        Thread.sleep(150L);
+        server.failNext(1, 503);
+
+        assertSame(first, client.getCurrentWeather("London"));
+        assertEquals(2, server.requestCount());
+        // the API is back with the same observation, so the cached response is renewed rather than replaced
+        assertSame(first, client.getCurrentWeather("London"));
+        assertEquals(3, server.requestCount());
+    }
+
+    @Test
+    void callsBeyondTheBulkheadLimitAreRejected() throws Exception {
+        server.delay(300);
+        client = newClient().maxConcurrentRequests(1).build();
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<WeatherResponse> london = callers.submit(() -> client.getCurrentWeather("London"));
+            Thread.sleep(100L);
+            Future<WeatherResponse> paris = callers.submit(() -> client.getCurrentWeather("Paris"));
+
+            ExecutionException error = assertThrows(ExecutionException.class, () -> paris.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(WeatherUnavailableException.class, error.getCause());
+            assertEquals("London", london.get(5, TimeUnit.SECONDS).getName());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void malformedBodyThrowsParsingException() throws WeatherSdkException {
+        server.respond("Madrid", 200, "{\"name\":");
+        client = newClient().build();
+
+        assertThrows(WeatherParsingException.class, () -> client.getCurrentWeather("Madrid"));
+    }
+
+    @Test
+    void concurrentMissesAreCoalesced() throws Exception {
+        server.delay(200);
+        client = newClient().build();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<WeatherResponse>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> client.getCurrentWeather("Paris")));
+            }
+            for (Future<WeatherResponse> result : results) {
+                assertEquals("Paris", result.get(5, TimeUnit.SECONDS).getName());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, server.requestCount("Paris"));
+        assertEquals(7, ((DefaultWeatherClient) client).getCoalescedRequestCount());
+    }
+
+    @Test
+    void virtualThreadModeWorksOnAnyJdk() throws Exception {
+        client = newClient().virtualThreads(true).build();
+
+        Map<String, WeatherResult> results = client.getCurrentWeather(Arrays.asList("London", "Paris"));
+
+        assertEquals("London", results.get("London").getResponse().getName());
+        assertEquals("Paris", client.getCurrentWeatherAsync("Paris").toCompletableFuture()
+                .get(5, TimeUnit.SECONDS).getName());
+        assertEquals(2, server.requestCount());
+    }
+
+    @Test
+    void asyncCacheHitCompletesImmediately() throws Exception {
+        client = newClient().build();
+        client.getCurrentWeatherAsync("London").toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<WeatherResponse> hit = client.getCurrentWeatherAsync("London").toCompletableFuture();
+
+        assertTrue(hit.isDone());
+        assertEquals("London", hit.get().getName());
+        assertEquals(1, server.requestCount());
+    }
+
+    @Test
+    void staleEntryIsServedWhileRefreshing() throws Exception {
+        client = newClient()
+                .cacheTtl(100, TimeUnit.MILLISECONDS)
+                .staleWhileRevalidate(1, TimeUnit.MINUTES)
+                .build();
+        WeatherResponse first = client.getCurrentWeather("London");
+        Thread.sleep(150L);
+        server.delay(300);
+        // a newer observation, so the refresh really replaces the entry
+        server.respondToId(2643743L, 200, StubWeatherServer.resource("london.json").replace("1729245600", "1729246200"));
+
+        long start = System.nanoTime();
+        WeatherResponse stale = client.getCurrentWeather("London");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertSame(first, stale);
+        assertTrue(elapsedMillis < 100, "stale read should not wait for the API, took " + elapsedMillis + " ms");
+        awaitRequests(2);
+
+        // the refreshed response replaces the stale one once the delayed fetch completes
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (client.getCurrentWeather("London") == first && System.nanoTime() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertNotSame(first, client.getCurrentWeather("London"));
+        assertEquals(2, server.requestCount());
+    }
+
+    @Test
+    void unchangedBodyOnRefreshOnlyRenewsTheEntry() throws Exception {
+        client = newClient()
+                .cacheTtl(300, TimeUnit.MILLISECONDS)
+                .staleWhileRevalidate(1, TimeUnit.MINUTES)
+                .build();
+        WeatherResponse first = client.getCurrentWeather("London");
+        String json = client.getCurrentWeatherJson("London");
+        Thread.sleep(350L);
+
+        assertSame(first, client.getCurrentWeather("London"));
+        awaitRequests(2);
+        Thread.sleep(50L);
+
+        // renewed in place: fresh again, same response and serialized JSON, no further call
+        assertSame(first, client.getCurrentWeather("London"));
+        assertSame(json, client.getCurrentWeatherJson("London"));
+        assertEquals(2, server.requestCount());
+    }
+
+    @Test
+    void refreshSendsEtagAndRenewsTheEntryOnNotModified() throws Exception {
+        server.etags(true);
+        client = newClient()
+                .cacheTtl(300, TimeUnit.MILLISECONDS)
+                .staleWhileRevalidate(1, TimeUnit.MINUTES)
+                .build();
+        WeatherResponse first = client.getCurrentWeather("London");
+        Thread.sleep(350L);
+
+        client.getCurrentWeather("London");
+        awaitRequests(2);
+        Thread.sleep(50L);
+
+        assertEquals(1, server.notModifiedCount());
+        assertSame(first, client.getCurrentWeather("London"));
+        assertEquals(2, server.requestCount());
+    }
+
+    @Test
+    void entryIsRefreshedAheadOfExpiry() throws Exception {
+        client = newClient()
+                .cacheTtl(1, TimeUnit.SECONDS)
+                .refreshAhead(900, TimeUnit.MILLISECONDS)
+                .build();
+        WeatherResponse first = client.getCurrentWeather("London");
+        Thread.sleep(150L);
+
+        assertSame(first, client.getCurrentWeather("London"));
+        awaitRequests(2);
+    }
+
+    @Test
+    void restartedClientServesResponsesFromDiskCache(@TempDir Path dir) throws WeatherSdkException {
+        Path file = dir.resolve("weather.cache");
+        client = newClient().diskCache(file).build();
+        WeatherResponse before = client.getCurrentWeather("London");
+        WeatherClients.destroy(API_KEY);
+
+        client = newClient().diskCache(file).build();
+        WeatherResponse after = client.getCurrentWeather("London");
+
+        assertEquals(1, server.requestCount());
+        assertEquals(before.getName(), after.getName());
+        assertEquals(before.getTemperature().getTemp(), after.getTemperature().getTemp(), 0.0);
+    }
+
+    @Test
+    void batchReturnsPerCityResultsInCallerOrder() throws WeatherSdkException {
+        server.delay(200);
+        client = newClient().build();
+        client.getCurrentWeather("London");
+
+        long start = System.nanoTime();
+        Map<String, WeatherResult> results = client.getCurrentWeather(
+                Arrays.asList("Paris", "London", "Atlantis", "Paris"));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(Arrays.asList("Paris", "London", "Atlantis"), new ArrayList<>(results.keySet()));
+        assertEquals("Paris", results.get("Paris").getResponse().getName());
+        assertEquals("London", results.get("London").getResponse().getName());
+        assertInstanceOf(WeatherNotFoundException.class, results.get("Atlantis").getException());
+        assertTrue(elapsedMillis < 400, "misses should be fetched in parallel, took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void restartedClientFindsPolledCityByName(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("weather.cache");
+        client = newClient()
+                .mode(Mode.POLLING)
+                .pollingInterval(100, TimeUnit.MILLISECONDS)
+                .pollingRateLimit(6000)
+                .cacheTtl(1, TimeUnit.SECONDS)
+                .diskCache(file)
+                .build();
+        client.getCurrentWeather("London");
+        // polling refreshes the entry under its city ID until the first fetch is long expired
+        Thread.sleep(1500L);
+        awaitRequestsAtLeast(10);
+        WeatherClients.destroy(API_KEY);
+
+        int requests = server.requestCount();
+        client = newClient().cacheTtl(1, TimeUnit.SECONDS).diskCache(file).build();
+
+        assertEquals("London", client.getCurrentWeather("London").getName());
+        assertEquals(requests, server.requestCount());
+    }
+
+    @Test
+    void sequentialRequestsReuseOneConnection() throws WeatherSdkException {
+        client = newClient().build();
+
+        client.getCurrentWeather("London");
+        client.getCurrentWeather("Paris");
+        assertThrows(WeatherNotFoundException.class, () -> client.getCurrentWeather("Atlantis"));
+
+        assertEquals(3, server.requestCount());
+        assertEquals(1, server.clientPorts().size());
+    }
+
+    private void awaitRequests(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.requestCount() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(expected, server.requestCount());
+    }
+
+    private void awaitRequestsAtLeast(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.requestCount() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertTrue(server.requestCount() >= expected);
+    }
+
+    private WeatherClientBuilder newClient() {
+        return WeatherClients.builder(API_KEY).baseUrl(server.baseUrl());
+    }
+}
@@ -0,0 +1,317 @@
+package com.nbenliogludev;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-process stand-in for the OpenWeather API used by tests.
+ *
+ * @author nbenliogludev
+ */
+public class StubWeatherServer implements AutoCloseable {
+
+    static {
+        // without it the JDK server's Nagle + delayed ACK adds ~40 ms to keep-alive responses
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private static final String ID_ROUTE = "#id:";
+    private static final String COORDINATES_ROUTE = "#coordinates";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final Map<String, Reply> replies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requestsByCity = new ConcurrentHashMap<>();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger groupRequests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private volatile int failureStatus;
+    private volatile String failureRetryAfter;
+    private volatile long delayMillis;
+    private volatile String lastQuery;
+    private volatile boolean etags;
+    private volatile boolean gzip;
+    private final AtomicInteger gzipped = new AtomicInteger();
+
+    public StubWeatherServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                StubWeatherServer.this.handle(exchange);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/data/2.5";
+    }
+
+    public StubWeatherServer respond(String city, int status, String body) {
+        replies.put(city.toLowerCase(Locale.ROOT), new Reply(status, body));
+        return this;
+    }
+
+    public StubWeatherServer respondWithResource(String city, String resource) {
+        return respond(city, 200, resource(resource));
+    }
+
+    public StubWeatherServer respondToIdWithResource(long id, String resource) {
+        return respondToId(id, 200, resource(resource));
+    }
+
+    public StubWeatherServer respondToId(long id, int status, String body) {
+        replies.put(ID_ROUTE + id, new Reply(status, body));
+        return this;
+    }
+
+    /**
+     * Sends an ETag with every successful reply and answers 304 to a request whose If-None-Match still matches.
+     */
+    public StubWeatherServer etags(boolean enabled) {
+        this.etags = enabled;
+        return this;
+    }
+
+    /**
+     * Answers every lat/lon request with {@code resource}, like the API picking the nearest station.
+     */
+    public StubWeatherServer respondToCoordinatesWithResource(String resource) {
+        replies.put(COORDINATES_ROUTE, new Reply(200, resource(resource)));
+        return this;
+    }
+
+    /**
+     * Answers the next {@code count} requests, whatever they ask for, with {@code status}.
+     */
+    public StubWeatherServer failNext(int count, int status) {
+        return failNext(count, status, null);
+    }
+
+    /**
+     * Fails the next {@code count} requests, sending {@code retryAfter} as their Retry-After header unless null.
+     */
+    public StubWeatherServer failNext(int count, int status, String retryAfter) {
+        this.failureStatus = status;
+        this.failureRetryAfter = retryAfter;
+        this.failuresLeft.set(count);
+        return this;
+    }
+
+    public StubWeatherServer delay(long delayMillis) {
+        this.delayMillis = delayMillis;
+        return this;
+    }
+
+    /**
+     * Raw query string of the last request.
+     */
+    public String lastQuery() {
+        return lastQuery;
+    }
+
+    public int requestCount() {
+        return requests.get();
+    }
+
+    public int requestCount(String city) {
+        AtomicInteger count = requestsByCity.get(city.toLowerCase(Locale.ROOT));
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Calls to the group endpoint; they are also part of {@link #requestCount()}.
+     */
+    public int groupRequestCount() {
+        return groupRequests.get();
+    }
+
+    /**
+     * Compresses replies to requests that accept gzip.
+     */
+    public StubWeatherServer gzip(boolean enabled) {
+        this.gzip = enabled;
+        return this;
+    }
+
+    public int gzippedCount() {
+        return gzipped.get();
+    }
+
+    public int notModifiedCount() {
+        return notModified.get();
+    }
+
+    public int requestCountForId(long id) {
+        return requestCount(ID_ROUTE + id);
+    }
+
+    public int coordinateRequestCount() {
+        return requestCount(COORDINATES_ROUTE);
+    }
+
+    /**
+     * Distinct client-side ports seen so far; one port per reused keep-alive connection.
+     */
+    public Set<Integer> clientPorts() {
+        return clientPorts;
+    }
+
+    public static String resource(String name) {
+        try (InputStream in = StubWeatherServer.class.getResourceAsStream("/openweather/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Missing test resource " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        lastQuery = exchange.getRequestURI().getRawQuery();
+
+        String route = route(exchange.getRequestURI().getRawQuery());
+        Reply reply = null;
+        if (exchange.getRequestURI().getPath().endsWith("/group")) {
+            groupRequests.incrementAndGet();
+            reply = groupReply(queryParam(exchange.getRequestURI().getRawQuery(), "id"));
+        } else if (route != null) {
+            requestsByCity.computeIfAbsent(route, k -> new AtomicInteger()).incrementAndGet();
+            reply = replies.get(route);
+        }
+        if (reply == null) {
+            reply = new Reply(404, resource("not-found.json"));
+        }
+        if (failuresLeft.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+            reply = new Reply(failureStatus, "{\"cod\":" + failureStatus + ",\"message\":\"unavailable\"}");
+            if (failureRetryAfter != null) {
+                exchange.getResponseHeaders().set("Retry-After", failureRetryAfter);
+            }
+        }
+
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (etags && reply.status == 200) {
+            String etag = "\"" + Integer.toHexString(reply.body.hashCode()) + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+        }
+
+        byte[] body = reply.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (gzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            gzipped.incrementAndGet();
+        }
+        exchange.sendResponseHeaders(reply.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Lists every requested ID that has a successful reply registered; unknown IDs are left out, as the API does.
+     */
+    private Reply groupReply(String ids) {
+        StringBuilder list = new StringBuilder();
+        int count = 0;
+        for (String id : ids == null ? new String[0] : ids.split(",")) {
+            Reply reply = replies.get(ID_ROUTE + id);
+            if (reply != null && reply.status == 200) {
+                list.append(count++ == 0 ? "" : ",").append(reply.body.trim());
+            }
+        }
+        return new Reply(200, "{\"cnt\":" + count + ",\"list\":[" + list + "]}");
+    }
+
+    private static String route(String rawQuery) throws UnsupportedEncodingException {
+        String city = queryParam(rawQuery, "q");
+        if (city != null) {
+            return city.toLowerCase(Locale.ROOT);
+        }
+        String id = queryParam(rawQuery, "id");
+        if (id != null) {
+            return ID_ROUTE + id;
+        }
+        return queryParam(rawQuery, "lat") != null ? COORDINATES_ROUTE : null;
+    }
+
+    private static String queryParam(String rawQuery, String name) throws UnsupportedEncodingException {
+        if (rawQuery == null) {
+            return null;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            }
+        }
+        return null;
+    }
+
+    private static final class Reply {
+        private final int status;
+        private final String body;
+
+        private Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.nbenliogludev;
+
+import com.nbenliogludev.exception.WeatherSdkException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class WeatherClientBuilderTest {
+
+    @AfterEach
+    void tearDown() {
+        WeatherClients.destroy("builder-key");
+    }
+
+    @Test
+    void buildRegistersConfiguredClient() throws WeatherSdkException {
+        WeatherClient client = WeatherClients.builder("builder-key")
+                .mode(Mode.ON_DEMAND)
+                .cacheCapacity(4_000)
+                .cacheTtl(2, TimeUnit.MINUTES)
+                .connectTimeout(1, TimeUnit.SECONDS)
+                .readTimeout(2, TimeUnit.SECONDS)
+                .build();
+
+        assertSame(client, WeatherClients.get("builder-key"));
+    }
+
+    @Test
+    void buildRejectsInvalidSettings() {
+        assertThrows(WeatherSdkException.class, () ->
+                WeatherClients.builder("builder-key").cacheCapacity(0).build());
+        assertThrows(WeatherSdkException.class, () ->
+                WeatherClients.builder("builder-key").cacheTtl(0, TimeUnit.SECONDS).build());
+        assertThrows(WeatherSdkException.class, () ->
+                WeatherClients.builder("builder-key").pollingInterval(-1, TimeUnit.SECONDS).build());
+        assertThrows(WeatherSdkException.class, () ->
+                WeatherClients.builder("builder-key").readTimeout(0, TimeUnit.MILLISECONDS).build());
+
+        assertNull(WeatherClients.get("builder-key"));
+    }
+
+    @Test
+    void destroyLeavesExternalSchedulerRunning() throws WeatherSdkException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            WeatherClients.builder("builder-key")
+                    .mode(Mode.POLLING)
+                    .pollingInterval(1, TimeUnit.HOURS)
+                    .scheduler(scheduler)
+                    .build();
+
+            WeatherClients.destroy("builder-key");
+
+            assertFalse(scheduler.isShutdown());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
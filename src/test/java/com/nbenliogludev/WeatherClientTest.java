@@ -0,0 +1,79 @@
+package com.nbenliogludev;
+
+import com.nbenliogludev.exception.WeatherNotFoundException;
+import com.nbenliogludev.exception.WeatherSdkException;
+import com.nbenliogludev.model.WeatherResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class WeatherClientTest {
+
+    /**
+     * Implements only the methods of the first release, like a test double written against it.
+     */
+    private static final class MinimalClient implements WeatherClient {
+
+        private final WeatherResponse london = new WeatherResponse();
+
+        @Override
+        public WeatherResponse getCurrentWeather(String city) throws WeatherSdkException {
+            if ("London".equals(city)) {
+                return london;
+            }
+            throw new WeatherNotFoundException("City not found: " + city, null);
+        }
+
+        @Override
+        public String getCurrentWeatherJson(String city) throws WeatherSdkException {
+            getCurrentWeather(city);
+            return "{\"name\":\"London\"}";
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    @Test
+    void defaultsDelegateToTheSynchronousMethods() throws Exception {
+        MinimalClient client = new MinimalClient();
+
+        assertSame(client.london, client.getCurrentWeatherAsync("London").toCompletableFuture().get());
+        CompletableFuture<WeatherResponse> missing = client.getCurrentWeatherAsync("Atlantis").toCompletableFuture();
+        ExecutionException ex = assertThrows(ExecutionException.class, missing::get);
+        assertTrue(ex.getCause() instanceof WeatherNotFoundException);
+
+        Map<String, WeatherResult> results = client.getCurrentWeather(Arrays.asList("London", "Atlantis", "London"));
+        assertEquals(2, results.size());
+        assertSame(client.london, results.get("London").getResponse());
+        assertTrue(results.get("Atlantis").getException() instanceof WeatherNotFoundException);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        client.writeCurrentWeatherJson("London", out);
+        assertEquals("{\"name\":\"London\"}", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        StringBuilder appended = new StringBuilder();
+        client.appendCurrentWeatherJson("London", appended);
+        assertEquals("{\"name\":\"London\"}", appended.toString());
+    }
+
+    @Test
+    void unsupportedDefaultsThrowSdkExceptions() {
+        MinimalClient client = new MinimalClient();
+
+        assertThrows(WeatherSdkException.class, () -> client.getCurrentWeather(51.5, -0.1));
+        assertThrows(WeatherSdkException.class, () -> client.getCurrentWeatherById(2643743L));
+        assertThrows(WeatherSdkException.class, () -> client.subscribe("London", change -> { }));
+        assertThrows(WeatherSdkException.class, () -> client.getHistory("London", 0L, Long.MAX_VALUE));
+    }
+}
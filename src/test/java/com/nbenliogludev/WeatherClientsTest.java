@@ -1,9 +1,14 @@
 package com.nbenliogludev;
 
 import com.nbenliogludev.exception.WeatherSdkException;
+import com.nbenliogludev.metrics.MicrometerWeatherMetrics;
+import com.nbenliogludev.model.WeatherResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -46,6 +51,96 @@ class WeatherClientsTest {
         assertSame(client, fromRegistry);
     }
 
+    @Test
+    void pollingClientsShareOneRuntimeReleasedOnDestroy() throws WeatherSdkException {
+        int before = WeatherClients.runtimeUserCount();
+
+        WeatherClients.create("test-key-1", Mode.POLLING);
+        WeatherClients.create("test-key-2", Mode.POLLING);
+        assertEquals(before + 2, WeatherClients.runtimeUserCount());
+
+        WeatherClients.destroy("test-key-1");
+        WeatherClients.destroy("test-key-1");
+        assertEquals(before + 1, WeatherClients.runtimeUserCount());
+        WeatherClients.destroy("test-key-2");
+        assertEquals(before, WeatherClients.runtimeUserCount());
+    }
+
+    @Test
+    void tenantsWithTheSharedCacheFetchEachCityOnce() throws Exception {
+        try (StubWeatherServer server = new StubWeatherServer().respondWithResource("London", "london.json")) {
+            WeatherClient first = sharing("test-key-1", server).build();
+            WeatherClient second = sharing("test-key-2", server).build();
+
+            WeatherResponse london = first.getCurrentWeather("London");
+
+            assertSame(london, second.getCurrentWeather("london"));
+            assertEquals(1, server.requestCount());
+            assertEquals(1, WeatherClients.sharedCacheUpstreamCalls("test-key-1"));
+            assertEquals(0, WeatherClients.sharedCacheUpstreamCalls("test-key-2"));
+        }
+    }
+
+    @Test
+    void pollingKeepsSharedCacheEntriesFresh() throws Exception {
+        try (StubWeatherServer server = new StubWeatherServer()
+                .respondWithResource("London", "london.json")
+                .respondToIdWithResource(2643743L, "london.json")) {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            WeatherClient client = sharing("test-key-1", server)
+                    .mode(Mode.POLLING)
+                    .pollingInterval(100, TimeUnit.MILLISECONDS)
+                    .pollingRateLimit(6000)
+                    .cacheTtl(500, TimeUnit.MILLISECONDS)
+                    .metrics(new MicrometerWeatherMetrics(registry))
+                    .build();
+
+            client.getCurrentWeather("London");
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1500);
+            while (System.nanoTime() < deadline) {
+                client.getCurrentWeather("London");
+                Thread.sleep(20L);
+            }
+
+            // refreshes went upstream instead of reusing the shared copy of the entry they were refreshing
+            assertEquals(1.0, registry.get("weather.cache.requests").tag("result", "miss").counter().count());
+            assertEquals(0.0, registry.get("weather.cache.removals").tag("cause", "expiry").counter().count());
+            assertTrue(WeatherClients.sharedCacheUpstreamCalls("test-key-1") >= 5);
+        }
+    }
+
+    @Test
+    void sharedEntryOlderThanTheTenantsTtlIsFetchedAgain() throws Exception {
+        try (StubWeatherServer server = new StubWeatherServer().respondWithResource("London", "london.json")) {
+            WeatherClient patient = sharing("test-key-1", server).build();
+            WeatherClient strict = sharing("test-key-2", server).cacheTtl(200, TimeUnit.MILLISECONDS).build();
+
+            WeatherResponse old = patient.getCurrentWeather("London");
+            Thread.sleep(300L);
+            WeatherResponse fresh = strict.getCurrentWeather("London");
+
+            assertNotSame(old, fresh);
+            assertEquals(2, server.requestCount());
+            assertEquals(1, WeatherClients.sharedCacheUpstreamCalls("test-key-2"));
+            // the tenant with the longer TTL keeps serving its own copy
+            assertSame(old, patient.getCurrentWeather("London"));
+        }
+    }
+
+    @Test
+    void sharedCacheIsScopedByUnits() throws Exception {
+        try (StubWeatherServer server = new StubWeatherServer().respondWithResource("London", "london.json")) {
+            WeatherClient standard = sharing("test-key-1", server).build();
+            WeatherClient metric = sharing("test-key-2", server).units(Units.METRIC).build();
+
+            standard.getCurrentWeather("London");
+            metric.getCurrentWeather("London");
+
+            assertEquals(2, server.requestCount());
+            assertTrue(server.lastQuery().contains("units=metric"));
+        }
+    }
+
     @Test
     void cannotCreateTwoClientsWithSameKey() throws WeatherSdkException {
         WeatherClient client = WeatherClients.create("duplicate-key", Mode.ON_DEMAND);
@@ -67,4 +162,8 @@ class WeatherClientsTest {
         WeatherClient afterDestroy = WeatherClients.get("test-key-2");
         assertNull(afterDestroy);
     }
-}
\ No newline at end of file
+
+    private static WeatherClientBuilder sharing(String apiKey, StubWeatherServer server) {
+        return WeatherClients.builder(apiKey).baseUrl(server.baseUrl()).sharedCache(true);
+    }
+}
@@ -0,0 +1,73 @@
+package com.nbenliogludev.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class AccessTrackerTest {
+
+    private static final long CYCLE = 1_000L;
+
+    @Test
+    void hotKeysAreRefreshedEveryCycleAndColdKeysLessOften() {
+        AccessTracker tracker = new AccessTracker(60 * CYCLE);
+        List<String> cached = Arrays.asList("hot", "cold");
+        tracker.record("cold", 0L);
+
+        int hotRefreshes = 0;
+        int coldRefreshes = 0;
+        for (int cycle = 1; cycle <= 16; cycle++) {
+            long now = cycle * CYCLE;
+            tracker.record("hot", now - 10);
+            tracker.record("hot", now - 5);
+            List<String> due = tracker.selectDue(cached, now);
+            hotRefreshes += due.contains("hot") ? 1 : 0;
+            coldRefreshes += due.contains("cold") ? 1 : 0;
+        }
+
+        assertEquals(16, hotRefreshes);
+        assertTrue(coldRefreshes >= 2 && coldRefreshes <= 4, "cold key refreshed " + coldRefreshes + " times");
+    }
+
+    @Test
+    void idleKeysAreNoLongerRefreshed() {
+        AccessTracker tracker = new AccessTracker(3 * CYCLE);
+        List<String> cached = Collections.singletonList("london");
+        tracker.record("london", 0L);
+        tracker.record("london", 0L);
+
+        assertEquals(cached, tracker.selectDue(cached, CYCLE));
+        assertTrue(tracker.selectDue(cached, 4 * CYCLE).isEmpty());
+
+        // a new read brings it back
+        tracker.record("london", 5 * CYCLE);
+        tracker.record("london", 5 * CYCLE);
+        assertEquals(cached, tracker.selectDue(cached, 6 * CYCLE));
+    }
+
+    @Test
+    void keysThatLeftTheCacheAreForgotten() {
+        AccessTracker tracker = new AccessTracker(60 * CYCLE);
+        tracker.record("london", 0L);
+        tracker.record("paris", 0L);
+
+        tracker.selectDue(Collections.singletonList("paris"), CYCLE);
+
+        assertEquals(1, tracker.size());
+    }
+
+    @Test
+    void refreshPeriodGrowsAsScoreDrops() {
+        assertEquals(1, AccessTracker.cyclesBetweenRefreshes(2.0));
+        assertEquals(2, AccessTracker.cyclesBetweenRefreshes(1.0));
+        assertEquals(4, AccessTracker.cyclesBetweenRefreshes(0.5));
+        assertEquals(AccessTracker.MAX_CYCLES_BETWEEN_REFRESHES, AccessTracker.cyclesBetweenRefreshes(0.0));
+    }
+}
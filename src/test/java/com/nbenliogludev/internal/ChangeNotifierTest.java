@@ -0,0 +1,99 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.model.TemperatureInfo;
+import com.nbenliogludev.model.WeatherInfo;
+import com.nbenliogludev.model.WeatherResponse;
+import com.nbenliogludev.model.WindInfo;
+import com.nbenliogludev.subscription.ChangeThresholds;
+import com.nbenliogludev.subscription.WeatherChange;
+import com.nbenliogludev.subscription.WeatherSubscription;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class ChangeNotifierTest {
+
+    private final ChangeNotifier notifier = new ChangeNotifier();
+    private final BlockingQueue<WeatherChange> changes = new LinkedBlockingQueue<>();
+
+    @AfterEach
+    void tearDown() {
+        notifier.close();
+    }
+
+    @Test
+    void smallChangesAccumulateUntilTheyCrossTheThreshold() throws Exception {
+        notifier.subscribe("id:1", "London", ChangeThresholds.DEFAULT, changes::add, weather(280.0, 3.0, "Clouds"));
+
+        notifier.publish("id:1", weather(280.3, 3.5, "Clouds"));
+        assertNull(changes.poll(100, TimeUnit.MILLISECONDS));
+
+        // compared with the last delivered response, not the last published one
+        notifier.publish("id:1", weather(280.6, 3.5, "Clouds"));
+        WeatherChange change = changes.poll(5, TimeUnit.SECONDS);
+        assertEquals(280.0, change.getPrevious().getTemperature().getTemp(), 1e-9);
+        assertEquals(280.6, change.getCurrent().getTemperature().getTemp(), 1e-9);
+
+        notifier.publish("id:1", weather(280.6, 3.5, "Rain"));
+        assertEquals("Rain", changes.poll(5, TimeUnit.SECONDS).getCurrent().getWeather().getMain());
+    }
+
+    @Test
+    void changesQueuedWhileAListenerRunsAreCoalesced() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        notifier.subscribe("id:2", "Paris", ChangeThresholds.DEFAULT, change -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, weather(280.0, 3.0, "Clouds"));
+        notifier.subscribe("id:1", "London", ChangeThresholds.DEFAULT, changes::add, weather(280.0, 3.0, "Clouds"));
+
+        // the Paris listener holds the notification thread while London changes twice
+        notifier.publish("id:2", weather(290.0, 3.0, "Clouds"));
+        Thread.sleep(50L);
+        notifier.publish("id:1", weather(282.0, 3.0, "Clouds"));
+        notifier.publish("id:1", weather(284.0, 3.0, "Clouds"));
+        release.countDown();
+
+        WeatherChange change = changes.poll(5, TimeUnit.SECONDS);
+        assertEquals(280.0, change.getPrevious().getTemperature().getTemp(), 1e-9);
+        assertEquals(284.0, change.getCurrent().getTemperature().getTemp(), 1e-9);
+        assertNull(changes.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void cancelledSubscriptionsAndFailingListenersDoNotAffectOthers() throws Exception {
+        WeatherSubscription cancelled = notifier.subscribe("id:1", "London", ChangeThresholds.DEFAULT,
+                changes::add, weather(280.0, 3.0, "Clouds"));
+        notifier.subscribe("id:1", "london", ChangeThresholds.DEFAULT, change -> {
+            throw new IllegalStateException("listener bug");
+        }, weather(280.0, 3.0, "Clouds"));
+        notifier.subscribe("id:1", "LONDON", ChangeThresholds.DEFAULT, changes::add, weather(280.0, 3.0, "Clouds"));
+
+        cancelled.cancel();
+        notifier.publish("id:1", weather(285.0, 3.0, "Clouds"));
+
+        assertEquals("LONDON", changes.poll(5, TimeUnit.SECONDS).getCity());
+        assertNull(changes.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, notifier.keys().size());
+    }
+
+    private static WeatherResponse weather(double temp, double windSpeed, String condition) {
+        WeatherResponse response = new WeatherResponse();
+        response.setWeather(new WeatherInfo(condition, condition.toLowerCase()));
+        response.setTemperature(new TemperatureInfo(temp, temp));
+        response.setWind(new WindInfo(windSpeed));
+        return response;
+    }
+}
@@ -0,0 +1,50 @@
+package com.nbenliogludev.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class CircuitBreakerTest {
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60_000L);
+
+        for (int i = 0; i < 2; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+
+        // a success in between resets the count
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void letsOneTrialCallThroughAfterTheOpenPeriod() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50L);
+        breaker.tryAcquire();
+        breaker.onFailure();
+        Thread.sleep(80L);
+
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquire());
+
+        Thread.sleep(80L);
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.tryAcquire());
+    }
+}
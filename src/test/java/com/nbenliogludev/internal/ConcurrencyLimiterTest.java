@@ -0,0 +1,69 @@
+package com.nbenliogludev.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class ConcurrencyLimiterTest {
+
+    @Test
+    void startsNoMoreThanLimitAndContinuesOnCompletion() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(3);
+        List<CompletableFuture<Void>> started = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            limiter.submit(() -> {
+                CompletableFuture<Void> operation = new CompletableFuture<>();
+                started.add(operation);
+                return operation;
+            });
+        }
+
+        assertEquals(3, started.size());
+        assertEquals(3, limiter.activeCount());
+        assertEquals(7, limiter.queuedCount());
+
+        started.get(0).complete(null);
+        started.get(1).complete(null);
+
+        assertEquals(5, started.size());
+        assertEquals(3, limiter.activeCount());
+
+        for (int i = 0; i < started.size(); i++) {
+            started.get(i).complete(null);
+        }
+
+        assertEquals(10, started.size());
+        assertEquals(0, limiter.activeCount());
+        assertEquals(0, limiter.queuedCount());
+    }
+
+    @Test
+    void alreadyCompletedOperationsDoNotRecurse() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1);
+        AtomicInteger runs = new AtomicInteger();
+
+        for (int i = 0; i < 100_000; i++) {
+            limiter.submit(() -> {
+                runs.incrementAndGet();
+                return CompletableFuture.completedFuture(null);
+            });
+        }
+
+        assertEquals(100_000, runs.get());
+        assertEquals(0, limiter.activeCount());
+    }
+
+    @Test
+    void rejectsNonPositiveLimit() {
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrencyLimiter(0));
+    }
+}
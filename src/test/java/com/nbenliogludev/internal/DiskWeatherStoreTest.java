@@ -0,0 +1,183 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.model.SysInfo;
+import com.nbenliogludev.model.TemperatureInfo;
+import com.nbenliogludev.model.WeatherInfo;
+import com.nbenliogludev.model.WeatherResponse;
+import com.nbenliogludev.model.WindInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class DiskWeatherStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void entriesSurviveReopen() throws IOException {
+        Path file = dir.resolve("weather.cache");
+        DiskWeatherStore store = DiskWeatherStore.open(file, 10);
+        store.putAsync("london", response("London", 284.2), 1_700_000_000_000L);
+        store.close();
+
+        DiskWeatherStore reopened = DiskWeatherStore.open(file, 10);
+        try {
+            DiskWeatherStore.Stored stored = reopened.get("london");
+            assertNotNull(stored);
+            assertEquals(1_700_000_000_000L, stored.getFetchedAtMillis());
+
+            WeatherResponse restored = stored.getResponse();
+            assertEquals("London", restored.getName());
+            assertEquals("Clouds", restored.getWeather().getMain());
+            assertEquals("overcast clouds", restored.getWeather().getDescription());
+            assertEquals(284.2, restored.getTemperature().getTemp(), 0.0);
+            assertEquals(283.1, restored.getTemperature().getFeelsLike(), 0.0);
+            assertEquals(4.1, restored.getWind().getSpeed(), 0.0);
+            assertEquals(10_000, restored.getVisibility());
+            assertEquals(1_700_000_100L, restored.getDatetime());
+            assertEquals(1_699_990_000L, restored.getSys().getSunrise());
+            assertEquals(1_700_020_000L, restored.getSys().getSunset());
+            assertEquals(3600, restored.getTimezone());
+            assertNull(reopened.get("paris"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void latestWriteForAKeyWins() throws IOException {
+        DiskWeatherStore store = DiskWeatherStore.open(dir.resolve("weather.cache"), 10);
+        try {
+            store.putAsync("london", response("London", 280.0), 1L);
+            store.putAsync("london", response("London", 290.0), 2L);
+            store.flush();
+
+            assertEquals(290.0, store.get("london").getResponse().getTemperature().getTemp(), 0.0);
+            assertEquals(2L, store.get("london").getFetchedAtMillis());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void linksResolveToTheLatestEntryOfTheirTarget() throws IOException {
+        Path file = dir.resolve("weather.cache");
+        DiskWeatherStore store = DiskWeatherStore.open(file, 10);
+        store.putAsync("q:london", response("London", 280.0), 1L);
+        store.linkAsync("q:london", "id:2643743");
+        store.putAsync("id:2643743", response("London", 290.0), 2L);
+        assertEquals(290.0, store.get("q:london").getResponse().getTemperature().getTemp(), 0.0);
+        store.close();
+
+        DiskWeatherStore reopened = DiskWeatherStore.open(file, 10);
+        try {
+            reopened.putAsync("id:2643743", response("London", 295.0), 3L);
+            reopened.flush();
+
+            DiskWeatherStore.Stored stored = reopened.get("q:london");
+            assertEquals(295.0, stored.getResponse().getTemperature().getTemp(), 0.0);
+            assertEquals(3L, stored.getFetchedAtMillis());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void fullTableOverwritesOldestEntries() throws IOException {
+        DiskWeatherStore store = DiskWeatherStore.open(dir.resolve("weather.cache"), 1);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                store.putAsync("city-" + i, response("City " + i, i), i);
+            }
+            store.flush();
+
+            assertNotNull(store.get("city-999"));
+            assertEquals("City 999", store.get("city-999").getResponse().getName());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void interruptedWriteOnlyLosesItsOwnSlot() throws IOException {
+        Path file = dir.resolve("weather.cache");
+        DiskWeatherStore store = DiskWeatherStore.open(file, 1);
+        for (int i = 0; i < 40; i++) {
+            store.putAsync("city-" + i, response("City " + i, i), i);
+        }
+        store.flush();
+        Set<String> stored = new HashSet<>();
+        for (int i = 0; i < 40; i++) {
+            if (store.get("city-" + i) != null) {
+                stored.add("city-" + i);
+            }
+        }
+        store.close();
+
+        // 40 keys in 64 slots share probe chains, so some slot lies on the way to other keys
+        for (int slot = 0; slot < 64; slot++) {
+            long offset = DiskWeatherStore.HEADER_SIZE + (long) slot * DiskWeatherStore.SLOT_SIZE;
+            String torn;
+            try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+                raw.seek(offset);
+                if (raw.readByte() == 0) {
+                    continue;
+                }
+                byte[] key = new byte[raw.readShort()];
+                raw.readFully(key);
+                torn = new String(key, StandardCharsets.UTF_8);
+                raw.seek(offset);
+                raw.writeByte(DiskWeatherStore.WRITING);
+            }
+
+            DiskWeatherStore reopened = DiskWeatherStore.open(file, 1);
+            try {
+                for (String key : stored) {
+                    assertEquals(key.equals(torn), reopened.get(key) == null, key + " with " + torn + " torn");
+                }
+                reopened.putAsync(torn, response("Restored", 0), 0L);
+            } finally {
+                reopened.close();
+            }
+        }
+    }
+
+    @Test
+    void unknownFileLayoutStartsEmpty() throws IOException {
+        Path file = dir.resolve("weather.cache");
+        Files.write(file, "not a cache file".getBytes(StandardCharsets.UTF_8));
+
+        DiskWeatherStore store = DiskWeatherStore.open(file, 10);
+        try {
+            assertNull(store.get("london"));
+        } finally {
+            store.close();
+        }
+    }
+
+    private static WeatherResponse response(String name, double temp) {
+        WeatherResponse response = new WeatherResponse();
+        response.setName(name);
+        response.setWeather(new WeatherInfo("Clouds", "overcast clouds"));
+        response.setTemperature(new TemperatureInfo(temp, 283.1));
+        response.setWind(new WindInfo(4.1));
+        response.setSys(new SysInfo(1_699_990_000L, 1_700_020_000L));
+        response.setVisibility(10_000);
+        response.setDatetime(1_700_000_100L);
+        response.setTimezone(3600);
+        return response;
+    }
+}
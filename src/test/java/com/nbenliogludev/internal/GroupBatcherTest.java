@@ -0,0 +1,147 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.exception.WeatherNotFoundException;
+import com.nbenliogludev.exception.WeatherSdkException;
+import com.nbenliogludev.model.WeatherResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class GroupBatcherTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<List<Long>> calls = new CopyOnWriteArrayList<>();
+
+    private final GroupBatcher.Fetcher fetcher = new GroupBatcher.Fetcher() {
+        @Override
+        public Map<Long, WeatherResponse> fetch(List<Long> ids) {
+            calls.add(ids);
+            Map<Long, WeatherResponse> found = new HashMap<>();
+            for (Long id : ids) {
+                if (id > 0) {
+                    WeatherResponse response = new WeatherResponse();
+                    response.setId(id);
+                    found.put(id, response);
+                }
+            }
+            return found;
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void idsWithinTheWindowAreFetchedTogether() throws Exception {
+        GroupBatcher batcher = new GroupBatcher(scheduler, 100, executor, executor, fetcher);
+
+        CompletableFuture<WeatherResponse> first = batcher.fetchAsync(1L);
+        CompletableFuture<WeatherResponse> second = batcher.fetchAsync(2L);
+        CompletableFuture<WeatherResponse> again = batcher.fetchAsync(1L);
+
+        assertEquals(1L, first.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(2L, second.get(5, TimeUnit.SECONDS).getId());
+        assertSame(first.get(), again.get());
+        assertEquals(1, calls.size());
+        assertEquals(2, calls.get(0).size());
+    }
+
+    @Test
+    void fullGroupIsSentWithoutWaitingForTheWindow() throws Exception {
+        GroupBatcher batcher = new GroupBatcher(scheduler, TimeUnit.MINUTES.toMillis(1), executor, executor, fetcher);
+
+        List<CompletableFuture<WeatherResponse>> results = new ArrayList<>();
+        for (long id = 1; id <= GroupBatcher.MAX_GROUP_SIZE + 1; id++) {
+            results.add(batcher.fetchAsync(id));
+        }
+
+        results.get(0).get(5, TimeUnit.SECONDS);
+        assertEquals(1, calls.size());
+        assertEquals(GroupBatcher.MAX_GROUP_SIZE, calls.get(0).size());
+        assertFalse(results.get(GroupBatcher.MAX_GROUP_SIZE).isDone());
+        assertEquals(1, batcher.getGroupRequestCount());
+    }
+
+    @Test
+    void batchesAwaitedByCallersAreNotSentOnTheBackgroundExecutor() throws Exception {
+        List<String> used = new CopyOnWriteArrayList<>();
+        Executor interactive = task -> {
+            used.add("interactive");
+            executor.execute(task);
+        };
+        Executor background = task -> {
+            used.add("background");
+            executor.execute(task);
+        };
+        GroupBatcher batcher = new GroupBatcher(scheduler, 50, interactive, background, fetcher);
+
+        batcher.refreshAsync(1L).get(5, TimeUnit.SECONDS);
+        CompletableFuture<WeatherResponse> refresh = batcher.refreshAsync(2L);
+        CompletableFuture<WeatherResponse> lookup = batcher.fetchAsync(3L);
+
+        assertEquals(3L, lookup.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(2L, refresh.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(Arrays.asList("background", "interactive"), used);
+    }
+
+    @Test
+    void missingCityFailsWithNotFoundAndCloseFailsPendingLookups() throws Exception {
+        GroupBatcher batcher = new GroupBatcher(scheduler, 10, executor, executor, fetcher);
+
+        assertThrows(WeatherNotFoundException.class, () -> batcher.fetch(-1L, 5000L));
+
+        GroupBatcher closing = new GroupBatcher(scheduler, TimeUnit.MINUTES.toMillis(1), executor, executor, fetcher);
+        CompletableFuture<WeatherResponse> pending = closing.fetchAsync(1L);
+        closing.close();
+        ExecutionException error = assertThrows(ExecutionException.class, () -> pending.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(WeatherSdkException.class, error.getCause());
+        assertTrue(closing.fetchAsync(2L).isCompletedExceptionally());
+    }
+
+    @Test
+    void batchesDroppedByTheirExecutorFailInsteadOfHanging() throws Exception {
+        SharedRuntime runtime = new SharedRuntime(0);
+        try {
+            SharedRuntime.Lane lane = runtime.openLane();
+            GroupBatcher batcher = new GroupBatcher(scheduler, 10, lane, lane, fetcher);
+
+            // no worker ever runs the lane's tasks
+            assertThrows(WeatherSdkException.class, () -> batcher.fetch(1L, 200L));
+            CompletableFuture<WeatherResponse> refresh = batcher.refreshAsync(2L);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (lane.queuedCount() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10L);
+            }
+            lane.close();
+
+            ExecutionException error = assertThrows(ExecutionException.class, () -> refresh.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, error.getCause().getCause());
+            assertTrue(calls.isEmpty());
+        } finally {
+            runtime.shutdown();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.nbenliogludev.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class LocationTest {
+
+    @Test
+    void nearbyCoordinatesShareAGridCell() {
+        Location a = Location.ofCoordinates(51.41, -0.15, 0.1);
+        Location b = Location.ofCoordinates(51.49, -0.11, 0.1);
+        Location c = Location.ofCoordinates(51.51, -0.11, 0.1);
+
+        assertEquals(a.key(), b.key());
+        assertNotEquals(a.key(), c.key());
+        assertEquals("lat=51.41&lon=-0.15", a.query());
+    }
+
+    @Test
+    void smallCoordinatesAreNotSentInScientificNotation() {
+        assertEquals("lat=0.0001&lon=-0.00005", Location.ofCoordinates(0.0001, -0.00005, 0.05).query());
+    }
+
+    @Test
+    void keysRoundTripToEquivalentQueries() {
+        assertEquals("q=s%C3%A3o+paulo", Location.fromKey(Location.ofCity(" São Paulo ").key(), 0.05).query());
+        assertEquals("id=2643743", Location.fromKey(Location.idKey(2643743L), 0.05).query());
+
+        Location cell = Location.fromKey(Location.cellKey(51.41, -0.15, 0.1), 0.1);
+        assertEquals(Location.cellKey(51.41, -0.15, 0.1), cell.key());
+        assertEquals("lat=51.45&lon=-0.15", cell.query());
+    }
+
+    @Test
+    void indexDropsAliasesOfEvictedEntriesWhenFull() {
+        Set<String> live = new HashSet<>(Collections.singleton("id:1"));
+        LocationIndex index = new LocationIndex(2, live::contains);
+
+        index.link("q:london", "id:1");
+        index.link("q:paris", "id:2");
+        index.link("q:berlin", "id:3");
+
+        assertEquals("id:1", index.resolve("q:london"));
+        assertEquals("q:paris", index.resolve("q:paris"));
+        assertEquals("id:3", index.resolve("q:berlin"));
+        assertEquals(2, index.size());
+    }
+}
@@ -0,0 +1,75 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.model.TemperatureInfo;
+import com.nbenliogludev.model.WeatherHistory;
+import com.nbenliogludev.model.WeatherResponse;
+import com.nbenliogludev.model.WindInfo;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class ObservationHistoryTest {
+
+    private static final long T0 = 1_729_245_600L;
+
+    @Test
+    void keepsTheLastObservationsInOrderAndSkipsRepeats() {
+        ObservationHistory history = new ObservationHistory(3, 10);
+        for (int i = 0; i < 5; i++) {
+            history.record("london", observation(T0 + i * 600, 280.0 + i, 3.0 + i));
+        }
+        history.record("london", observation(T0 + 4 * 600, 300.0, 9.0));
+        history.record("london", observation(T0, 250.0, 1.0));
+
+        WeatherHistory all = history.query("london", 0L, Long.MAX_VALUE);
+        assertEquals(3, all.size());
+        assertEquals(T0 + 2 * 600, all.getDatetime(0));
+        assertEquals(T0 + 4 * 600, all.getDatetime(2));
+        assertEquals(284.0, all.getTemperature(2), 1e-4);
+    }
+
+    @Test
+    void rangeQueriesAggregateTheWindow() {
+        ObservationHistory history = new ObservationHistory(10, 10);
+        history.record("london", observation(T0, 280.0, 2.0));
+        history.record("london", observation(T0 + 600, 284.0, 6.0));
+        history.record("london", observation(T0 + 1200, 282.0, 4.0));
+        history.record("london", observation(T0 + 1800, 290.0, 10.0));
+
+        WeatherHistory window = history.query("london", T0 + 600, T0 + 1200);
+
+        assertEquals(2, window.size());
+        assertEquals(282.0, window.getMinTemperature(), 1e-4);
+        assertEquals(284.0, window.getMaxTemperature(), 1e-4);
+        assertEquals(283.0, window.getAverageTemperature(), 1e-4);
+        assertEquals(5.0, window.getAverageWindSpeed(), 1e-4);
+        assertTrue(history.query("paris", 0L, Long.MAX_VALUE).isEmpty());
+        assertTrue(Double.isNaN(history.query("paris", 0L, Long.MAX_VALUE).getMaxTemperature()));
+    }
+
+    @Test
+    void leastRecentlyObservedCityIsDroppedBeyondTheLimit() {
+        ObservationHistory history = new ObservationHistory(4, 2);
+        history.record("london", observation(T0, 280.0, 2.0));
+        history.record("paris", observation(T0 + 300, 285.0, 3.0));
+        history.record("london", observation(T0 + 600, 281.0, 2.0));
+        // a repeated observation adds nothing, so it does not count as recent either
+        history.record("paris", observation(T0 + 300, 285.0, 3.0));
+        history.record("berlin", observation(T0 + 1200, 279.0, 4.0));
+
+        assertEquals(2, history.size());
+        assertTrue(history.query("paris", 0L, Long.MAX_VALUE).isEmpty());
+        assertEquals(2, history.query("london", 0L, Long.MAX_VALUE).size());
+    }
+
+    private static WeatherResponse observation(long datetime, double temp, double windSpeed) {
+        WeatherResponse response = new WeatherResponse();
+        response.setDatetime(datetime);
+        response.setTemperature(new TemperatureInfo(temp, temp - 1));
+        response.setWind(new WindInfo(windSpeed));
+        return response;
+    }
+}
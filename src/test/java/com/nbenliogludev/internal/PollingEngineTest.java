@@ -0,0 +1,153 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.metrics.NoopWeatherMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class PollingEngineTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void spreadsRefreshesAcrossTheInterval() throws InterruptedException {
+        List<String> keys = Arrays.asList("a", "b", "c", "d");
+        List<Long> startedAt = new CopyOnWriteArrayList<>();
+        CountDownLatch cycle = new CountDownLatch(keys.size());
+        long begin = System.nanoTime();
+
+        PollingEngine<String> engine = new PollingEngine<>(scheduler, 400, 4, null,
+                new FixedTarget(keys) {
+                    @Override
+                    public CompletionStage<?> refresh(String item) {
+                        startedAt.add(System.nanoTime() - begin);
+                        cycle.countDown();
+                        return CompletableFuture.completedFuture(null);
+                    }
+                }, NoopWeatherMetrics.INSTANCE);
+        engine.start();
+
+        assertTrue(cycle.await(5, TimeUnit.SECONDS));
+        engine.stop();
+
+        // 4 items over 400 ms: one every ~100 ms rather than all at t=0
+        long lastStart = TimeUnit.NANOSECONDS.toMillis(startedAt.get(3));
+        assertTrue(lastStart >= 280, "last refresh started at " + lastStart + " ms");
+    }
+
+    @Test
+    void capsConcurrentRefreshes() throws InterruptedException {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            keys.add("city-" + i);
+        }
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(keys.size());
+        ScheduledExecutorService workers = Executors.newScheduledThreadPool(8);
+
+        PollingEngine<String> engine = new PollingEngine<>(scheduler, 60, 2, null,
+                new FixedTarget(keys) {
+                    @Override
+                    public CompletionStage<?> refresh(String item) {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        CompletableFuture<Void> result = new CompletableFuture<>();
+                        workers.schedule(() -> {
+                            running.decrementAndGet();
+                            done.countDown();
+                            result.complete(null);
+                        }, 30, TimeUnit.MILLISECONDS);
+                        return result;
+                    }
+                }, NoopWeatherMetrics.INSTANCE);
+        engine.start();
+
+        try {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            engine.stop();
+            workers.shutdownNow();
+        }
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void rateLimitStretchesTheCycle() throws InterruptedException {
+        List<String> keys = Arrays.asList("a", "b", "c");
+        CountDownLatch cycle = new CountDownLatch(keys.size());
+        long begin = System.nanoTime();
+
+        // 600 calls per minute = one every 100 ms, although the interval would allow one every ~3 ms
+        PollingEngine<String> engine = new PollingEngine<>(scheduler, 10, 3, new TokenBucket(600, 1),
+                new FixedTarget(keys) {
+                    @Override
+                    public CompletionStage<?> refresh(String item) {
+                        cycle.countDown();
+                        return CompletableFuture.completedFuture(null);
+                    }
+                }, NoopWeatherMetrics.INSTANCE);
+        engine.start();
+
+        assertTrue(cycle.await(5, TimeUnit.SECONDS));
+        engine.stop();
+        assertTrue(System.nanoTime() - begin >= TimeUnit.MILLISECONDS.toNanos(190));
+    }
+
+    @Test
+    void startsNextCycleAfterTheInterval() throws InterruptedException {
+        ConcurrentHashMap<String, AtomicInteger> refreshes = new ConcurrentHashMap<>();
+        CountDownLatch threeCycles = new CountDownLatch(3);
+
+        PollingEngine<String> engine = new PollingEngine<>(scheduler, 50, 1, null,
+                new FixedTarget(Arrays.asList("london")) {
+                    @Override
+                    public CompletionStage<?> refresh(String item) {
+                        refreshes.computeIfAbsent(item, k -> new AtomicInteger()).incrementAndGet();
+                        threeCycles.countDown();
+                        return CompletableFuture.completedFuture(null);
+                    }
+                }, NoopWeatherMetrics.INSTANCE);
+        engine.start();
+
+        assertTrue(threeCycles.await(5, TimeUnit.SECONDS));
+        engine.stop();
+        assertTrue(refreshes.get("london").get() >= 3);
+    }
+
+    private abstract static class FixedTarget implements PollingEngine.Target<String> {
+
+        private final Collection<String> items;
+
+        FixedTarget(Collection<String> items) {
+            this.items = items;
+        }
+
+        @Override
+        public Collection<String> items() {
+            return items;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.nbenliogludev.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class ReadBuffersTest {
+
+    @Test
+    void decodesUtf8BodiesOfAnySize() throws Exception {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < ReadBuffers.INITIAL_SIZE * 3) {
+            text.append("São Paulo, Zürich, Москва; ");
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+
+        try (ReadBuffers buffers = ReadBuffers.acquire()) {
+            buffers.read(new ByteArrayInputStream(bytes));
+
+            assertEquals(bytes.length, buffers.length());
+            assertEquals(text.toString(), read(buffers.reader()));
+            assertEquals(text.toString(), buffers.string());
+            CRC32 expected = new CRC32();
+            expected.update(bytes);
+            assertEquals(expected.getValue(), buffers.crc32().getValue());
+        }
+    }
+
+    @Test
+    void returnedBuffersAreReusedByAnyThread() throws Exception {
+        ReadBuffers first = ReadBuffers.acquire();
+        first.read(new ByteArrayInputStream("{\"a\":1}".getBytes(StandardCharsets.UTF_8)));
+        first.close();
+
+        // a fresh thread per call, as with virtual threads, still gets pooled buffers
+        CompletableFuture<ReadBuffers> second = CompletableFuture.supplyAsync(ReadBuffers::acquire,
+                command -> new Thread(command).start());
+        ReadBuffers buffers = second.get(5, TimeUnit.SECONDS);
+        try {
+            buffers.read(new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)));
+            assertEquals("{}", buffers.string());
+            assertEquals("{}", read(buffers.reader()));
+        } finally {
+            buffers.close();
+        }
+    }
+
+    @Test
+    void poolIsBounded() {
+        List<ReadBuffers> held = new ArrayList<>();
+        for (int i = 0; i < ReadBuffers.MAX_POOLED * 2; i++) {
+            held.add(ReadBuffers.acquire());
+        }
+        Set<ReadBuffers> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        distinct.addAll(held);
+        assertEquals(held.size(), distinct.size());
+        held.forEach(ReadBuffers::close);
+
+        Set<ReadBuffers> reused = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < ReadBuffers.MAX_POOLED * 2; i++) {
+            ReadBuffers buffers = ReadBuffers.acquire();
+            if (distinct.contains(buffers)) {
+                reused.add(buffers);
+            }
+        }
+        assertEquals(ReadBuffers.MAX_POOLED, reused.size());
+    }
+
+    private static String read(Reader reader) throws Exception {
+        StringBuilder out = new StringBuilder();
+        int c;
+        while ((c = reader.read()) != -1) {
+            out.append((char) c);
+        }
+        return out.toString();
+    }
+}
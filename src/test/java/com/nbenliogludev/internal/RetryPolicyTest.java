@@ -0,0 +1,66 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.exception.WeatherApiException;
+import com.nbenliogludev.exception.WeatherNetworkException;
+import com.nbenliogludev.exception.WeatherNotFoundException;
+import com.nbenliogludev.exception.WeatherParsingException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class RetryPolicyTest {
+
+    @Test
+    void backoffDoublesWithJitterAndIsCapped() {
+        RetryPolicy policy = new RetryPolicy(3, 100L);
+
+        for (int i = 0; i < 100; i++) {
+            long first = policy.backoffMillis(0);
+            long third = policy.backoffMillis(2);
+            assertTrue(first >= 50 && first <= 100, "first backoff " + first);
+            assertTrue(third >= 200 && third <= 400, "third backoff " + third);
+            assertTrue(policy.backoffMillis(30) <= RetryPolicy.MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    @Test
+    void onlyUpstreamHealthFailuresAreTransient() {
+        assertTrue(RetryPolicy.isTransient(new WeatherNetworkException("timeout", new IOException())));
+        assertTrue(RetryPolicy.isTransient(new WeatherApiException("down", 503, "")));
+        assertFalse(RetryPolicy.isTransient(new WeatherApiException("slow down", 429, "")));
+        assertTrue(RetryPolicy.isThrottled(new WeatherApiException("slow down", 429, "")));
+        assertFalse(RetryPolicy.isTransient(new WeatherApiException("bad key", 401, "")));
+        assertFalse(RetryPolicy.isTransient(new WeatherNotFoundException("unknown city", "")));
+        assertFalse(RetryPolicy.isTransient(new WeatherParsingException("bad json", new IOException())));
+    }
+
+    @Test
+    void rateLimitIsRetriedOnlyAfterTheRequestedDelay() {
+        RetryPolicy policy = new RetryPolicy(2, 100L);
+
+        assertEquals(-1L, policy.retryDelayMillis(new WeatherApiException("slow down", 429, ""), 0));
+        assertEquals(2000L, policy.retryDelayMillis(new WeatherApiException("slow down", 429, "", 2000L), 0));
+        assertEquals(-1L, policy.retryDelayMillis(new WeatherApiException("slow down", 429, "", 60_000L), 0));
+        assertEquals(-1L, policy.retryDelayMillis(new WeatherApiException("slow down", 429, "", 2000L), 2));
+        long backoff = policy.retryDelayMillis(new WeatherApiException("down", 503, ""), 0);
+        assertTrue(backoff >= 50 && backoff <= 100, "backoff " + backoff);
+        assertEquals(-1L, policy.retryDelayMillis(new WeatherNotFoundException("unknown city", ""), 0));
+    }
+
+    @Test
+    void retryAfterIsParsedAsSecondsOrHttpDate() {
+        long now = 1_700_000_000_000L;
+
+        assertEquals(3000L, RetryPolicy.parseRetryAfter(" 3 ", now));
+        assertEquals(5000L, RetryPolicy.parseRetryAfter("Tue, 14 Nov 2023 22:13:25 GMT", now));
+        assertEquals(0L, RetryPolicy.parseRetryAfter("Tue, 14 Nov 2023 22:00:00 GMT", now));
+        assertEquals(-1L, RetryPolicy.parseRetryAfter(null, now));
+        assertEquals(-1L, RetryPolicy.parseRetryAfter("soon", now));
+        assertEquals(-1L, RetryPolicy.parseRetryAfter("-1", now));
+    }
+}
@@ -0,0 +1,97 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.exception.WeatherSdkException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class SharedRuntimeTest {
+
+    private final SharedRuntime runtime = new SharedRuntime(1);
+
+    @AfterEach
+    void tearDown() {
+        runtime.shutdown();
+    }
+
+    @Test
+    void lanesAreServedRoundRobin() throws InterruptedException {
+        SharedRuntime.Lane busy = runtime.openLane();
+        SharedRuntime.Lane quiet = runtime.openLane();
+        List<String> order = new CopyOnWriteArrayList<>();
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(21);
+
+        busy.execute(() -> await(blocker));
+        for (int i = 0; i < 20; i++) {
+            busy.execute(() -> {
+                order.add("busy");
+                done.countDown();
+            });
+        }
+        quiet.execute(() -> {
+            order.add("quiet");
+            done.countDown();
+        });
+        blocker.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        // the quiet lane's only task does not wait behind the 20 queued in the busy lane
+        assertTrue(order.indexOf("quiet") <= 1, "quiet task ran at position " + order.indexOf("quiet"));
+    }
+
+    @Test
+    void closedLaneDropsPendingTasksAndRejectsNewOnes() throws InterruptedException {
+        SharedRuntime.Lane lane = runtime.openLane();
+        CountDownLatch blocker = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+
+        lane.execute(() -> await(blocker));
+        lane.execute(ran::incrementAndGet);
+        lane.close();
+        blocker.countDown();
+
+        assertThrows(RejectedExecutionException.class, () -> lane.execute(ran::incrementAndGet));
+        CountDownLatch other = new CountDownLatch(1);
+        runtime.openLane().execute(other::countDown);
+        assertTrue(other.await(5, TimeUnit.SECONDS));
+        assertEquals(0, ran.get());
+    }
+
+    @Test
+    void closingALaneFailsLoadsQueuedOnIt() throws InterruptedException {
+        SharedRuntime.Lane lane = runtime.openLane();
+        CountDownLatch blocker = new CountDownLatch(1);
+        SingleFlight<String> flight = new SingleFlight<>();
+
+        lane.execute(() -> await(blocker));
+        CompletableFuture<String> queued = flight.executeAsync("london", () -> "London", lane);
+        lane.close();
+        blocker.countDown();
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(WeatherSdkException.class, error.getCause());
+        assertFalse(flight.isInFlight("london"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
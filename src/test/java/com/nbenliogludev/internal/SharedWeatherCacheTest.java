@@ -0,0 +1,149 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.exception.WeatherApiException;
+import com.nbenliogludev.model.WeatherResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class SharedWeatherCacheTest {
+
+    private static final String SCOPE = "stub|STANDARD|";
+    private static final double CELL = 0.05;
+
+    private final AtomicInteger upstream = new AtomicInteger();
+
+    @Test
+    void locationIsLoadedOnceAndChargedToTheTenantThatAskedFirst() throws Exception {
+        SharedWeatherCache cache = new SharedWeatherCache(10, 10, 60_000L);
+
+        WeatherCache.Entry first = cache.get("tenant-a", SCOPE, Location.ofCity("London"), CELL, Long.MIN_VALUE,
+                () -> fetch("London", 1L));
+        WeatherCache.Entry byId = cache.get("tenant-b", SCOPE, Location.ofId(1L), CELL, Long.MIN_VALUE,
+                () -> fetch("London", 1L));
+
+        assertSame(first.getResponse(), byId.getResponse());
+        assertEquals(1, upstream.get());
+        assertEquals(1, cache.getUpstreamCalls("tenant-a"));
+        assertEquals(0, cache.getUpstreamCalls("tenant-b"));
+    }
+
+    @Test
+    void tenantAtItsLimitIsServedButNotShared() throws Exception {
+        SharedWeatherCache cache = new SharedWeatherCache(10, 1, 60_000L);
+
+        cache.get("tenant-a", SCOPE, Location.ofCity("London"), CELL, Long.MIN_VALUE, () -> fetch("London", 1L));
+        WeatherCache.Entry paris = cache.get("tenant-a", SCOPE, Location.ofCity("Paris"), CELL, Long.MIN_VALUE,
+                () -> fetch("Paris", 2L));
+
+        assertEquals("Paris", paris.getResponse().getName());
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.ownedCount("tenant-a"));
+
+        cache.get("tenant-b", SCOPE, Location.ofCity("Paris"), CELL, Long.MIN_VALUE, () -> fetch("Paris", 2L));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void evictedEntriesNoLongerCountAgainstTheTenant() throws Exception {
+        SharedWeatherCache cache = new SharedWeatherCache(2, 2, 60_000L);
+
+        cache.get("tenant-a", SCOPE, Location.ofCity("London"), CELL, Long.MIN_VALUE, () -> fetch("London", 1L));
+        cache.get("tenant-b", SCOPE, Location.ofCity("Paris"), CELL, Long.MIN_VALUE, () -> fetch("Paris", 2L));
+        cache.get("tenant-b", SCOPE, Location.ofCity("Berlin"), CELL, Long.MIN_VALUE, () -> fetch("Berlin", 3L));
+        cache.get("tenant-a", SCOPE, Location.ofCity("Rome"), CELL, Long.MIN_VALUE, () -> fetch("Rome", 4L));
+        cache.get("tenant-a", SCOPE, Location.ofCity("Madrid"), CELL, Long.MIN_VALUE, () -> fetch("Madrid", 5L));
+
+        // London was evicted, so tenant-a may still add two entries
+        assertEquals(2, cache.ownedCount("tenant-a"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void sharedEntryNoNewerThanTheCallersCopyIsFetchedAgain() throws Exception {
+        SharedWeatherCache cache = new SharedWeatherCache(10, 10, 60_000L);
+        WeatherCache.Entry first = cache.get("tenant-a", SCOPE, Location.ofCity("London"), CELL, Long.MIN_VALUE,
+                () -> fetch("London", 1L));
+        Thread.sleep(5L);
+
+        WeatherCache.Entry refreshed = cache.get("tenant-b", SCOPE, Location.ofId(1L), CELL,
+                first.getFetchedAtMillis(), () -> fetch("London", 1L));
+        WeatherCache.Entry reused = cache.get("tenant-a", SCOPE, Location.ofId(1L), CELL,
+                first.getFetchedAtMillis(), () -> fetch("London", 1L));
+
+        assertTrue(refreshed.getFetchedAtMillis() > first.getFetchedAtMillis());
+        assertSame(refreshed, reused);
+        assertEquals(2, upstream.get());
+        assertEquals(1, cache.getUpstreamCalls("tenant-b"));
+    }
+
+    @Test
+    void sameNameInAnotherCountryDoesNotReplaceTheCityForOtherTenants() throws Exception {
+        SharedWeatherCache cache = new SharedWeatherCache(10, 10, 60_000L);
+
+        cache.get("tenant-a", SCOPE, Location.ofCity("London"), CELL, Long.MIN_VALUE, () -> fetch("London", 1L));
+        WeatherCache.Entry canada = cache.get("tenant-b", SCOPE, Location.ofCity("London,CA"), CELL,
+                Long.MIN_VALUE, () -> fetch("London", 2L));
+        WeatherCache.Entry london = cache.get("tenant-c", SCOPE, Location.ofCity("London"), CELL,
+                Long.MIN_VALUE, () -> fetch("London", 1L));
+
+        assertEquals(2L, canada.getResponse().getId());
+        assertEquals(1L, london.getResponse().getId());
+        assertEquals(2, upstream.get());
+    }
+
+    @Test
+    void refusedKeyIsNotSharedWithWaitingTenants() throws Exception {
+        SharedWeatherCache cache = new SharedWeatherCache(10, 10, 60_000L);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService tenants = Executors.newFixedThreadPool(2);
+        try {
+            Future<WeatherCache.Entry> revoked = tenants.submit(() -> cache.get("tenant-a", SCOPE,
+                    Location.ofCity("London"), CELL, Long.MIN_VALUE, () -> {
+                        loading.countDown();
+                        awaitQuietly(release);
+                        throw new WeatherApiException("Invalid API key", 401, "");
+                    }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<WeatherCache.Entry> waiting = tenants.submit(() -> cache.get("tenant-b", SCOPE,
+                    Location.ofCity("London"), CELL, Long.MIN_VALUE, () -> fetch("London", 1L)));
+            Thread.sleep(100L);
+            release.countDown();
+
+            ExecutionException error = assertThrows(ExecutionException.class, () -> revoked.get(5, TimeUnit.SECONDS));
+            assertEquals(401, ((WeatherApiException) error.getCause()).getStatusCode());
+            assertEquals("London", waiting.get(5, TimeUnit.SECONDS).getResponse().getName());
+            assertEquals(1, cache.getUpstreamCalls("tenant-b"));
+        } finally {
+            tenants.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private WeatherResponse fetch(String name, long id) {
+        upstream.incrementAndGet();
+        WeatherResponse response = new WeatherResponse();
+        response.setName(name);
+        response.setId(id);
+        return response;
+    }
+}
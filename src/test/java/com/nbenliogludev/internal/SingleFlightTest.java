@@ -0,0 +1,158 @@
+package com.nbenliogludev.internal;
+
+import com.nbenliogludev.exception.WeatherNotFoundException;
+import com.nbenliogludev.exception.WeatherSdkException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(pool.submit(() -> flight.execute("london", () -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return "London";
+                })));
+            }
+
+            waitUntilCoalesced(flight, CALLERS - 1);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("London", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, flight.getExecutionCount());
+        assertEquals(CALLERS - 1, flight.getCoalescedCount());
+        assertEquals(0, flight.inFlightCount());
+    }
+
+    @Test
+    void waitersReceiveLeaderException() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = pool.submit(() -> flight.execute("nowhere", () -> {
+                await(release);
+                throw new WeatherNotFoundException("Weather API returned status 404", "{}");
+            }));
+            waitUntilInFlight(flight);
+
+            Future<String> waiter = pool.submit(() -> flight.execute("nowhere", () -> "unexpected"));
+            waitUntilCoalesced(flight, 1);
+            release.countDown();
+
+            Exception leaderError = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+            Exception waiterError = assertThrows(Exception.class, () -> waiter.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(WeatherNotFoundException.class, leaderError.getCause());
+            assertInstanceOf(WeatherNotFoundException.class, waiterError.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void asyncCallersShareOneLoadOnExecutor() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<String> first = flight.executeAsync("rome", () -> {
+                loads.incrementAndGet();
+                await(release);
+                return "Rome";
+            }, executor);
+            CompletableFuture<String> second = flight.executeAsync("rome", () -> "unexpected", executor);
+
+            second.cancel(false);
+            release.countDown();
+
+            assertEquals("Rome", first.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, flight.getCoalescedCount());
+    }
+
+    @Test
+    void asyncLoadFailsWhenExecutorRejects() {
+        SingleFlight<String> flight = new SingleFlight<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+
+        CompletableFuture<String> result = flight.executeAsync("oslo", () -> "Oslo", executor);
+
+        ExecutionException error = assertThrows(ExecutionException.class, result::get);
+        assertInstanceOf(WeatherSdkException.class, error.getCause());
+        assertEquals(0, flight.inFlightCount());
+    }
+
+    @Test
+    void sequentialCallsAreNotCoalesced() throws WeatherSdkException {
+        SingleFlight<String> flight = new SingleFlight<>();
+
+        flight.execute("paris", () -> "Paris");
+        flight.execute("paris", () -> "Paris");
+
+        assertEquals(2, flight.getExecutionCount());
+        assertEquals(0, flight.getCoalescedCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntilInFlight(SingleFlight<?> flight) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (flight.inFlightCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5L);
+        }
+    }
+
+    private static void waitUntilCoalesced(SingleFlight<?> flight, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (flight.getCoalescedCount() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5L);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.nbenliogludev.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class TokenBucketTest {
+
+    @Test
+    void allowsBurstThenSpacesPermitsAtTheSustainedRate() {
+        TokenBucket bucket = new TokenBucket(60, 3);
+
+        assertEquals(0L, bucket.reserve());
+        assertEquals(0L, bucket.reserve());
+        assertEquals(0L, bucket.reserve());
+
+        long fourth = bucket.reserve();
+        long fifth = bucket.reserve();
+        assertTrue(fourth > TimeUnit.MILLISECONDS.toNanos(900), "fourth permit waits about a second");
+        assertTrue(fourth <= TimeUnit.SECONDS.toNanos(1));
+        assertTrue(fifth - fourth > TimeUnit.MILLISECONDS.toNanos(900), "permits are a second apart");
+    }
+
+    @Test
+    void rejectsNonPositiveSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(60, 0));
+    }
+}
@@ -0,0 +1,34 @@
+package com.nbenliogludev.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class VirtualThreadsTest {
+
+    @Test
+    void probeMatchesTheRunningJdk() throws Exception {
+        String version = System.getProperty("java.specification.version");
+        boolean expected = !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+        assertEquals(expected, VirtualThreads.isSupported());
+
+        ExecutorService executor = VirtualThreads.newExecutor();
+        if (!expected) {
+            assertNull(executor);
+            return;
+        }
+        try {
+            Object virtual = executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()))
+                    .get(5, TimeUnit.SECONDS);
+            assertEquals(Boolean.TRUE, virtual);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
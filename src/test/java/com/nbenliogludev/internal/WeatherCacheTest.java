@@ -1,9 +1,22 @@
 package com.nbenliogludev.internal;
 
+import com.nbenliogludev.metrics.NoopWeatherMetrics;
+import com.nbenliogludev.model.SysInfo;
+import com.nbenliogludev.model.TemperatureInfo;
+import com.nbenliogludev.model.WeatherInfo;
 import com.nbenliogludev.model.WeatherResponse;
+import com.nbenliogludev.model.WindInfo;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -52,6 +65,48 @@ class WeatherCacheTest {
         assertFalse(snapshot.containsKey("city"));
     }
 
+    @Test
+    void expiredEntryIsKeptForStaleReadsUntilMaxStale() throws InterruptedException {
+        WeatherCache cache = new WeatherCache(10, 100L, 200L, NoopWeatherMetrics.INSTANCE);
+        WeatherResponse response = new WeatherResponse();
+
+        cache.put("city", response);
+        Thread.sleep(150L);
+
+        assertNull(cache.getIfFresh("city"));
+        WeatherCache.Entry stale = cache.getEntry("city");
+        assertNotNull(stale);
+        assertSame(response, stale.getResponse());
+
+        Thread.sleep(200L);
+
+        assertNull(cache.getEntry("city"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void compactEntriesRestoreEveryFieldAndShareConditions() {
+        WeatherCache cache = new WeatherCache(10, 600_000L, 0L, true, NoopWeatherMetrics.INSTANCE);
+        cache.put("london", response("London", new String("Clouds"), new String("overcast clouds")));
+        cache.put("paris", response("Paris", new String("Clouds"), new String("overcast clouds")));
+
+        WeatherResponse london = cache.getIfFresh("london");
+        WeatherResponse paris = cache.getIfFresh("paris");
+
+        assertEquals("London", london.getName());
+        assertEquals("overcast clouds", london.getWeather().getDescription());
+        assertEquals(284.2, london.getTemperature().getTemp(), 0.0);
+        assertEquals(283.1, london.getTemperature().getFeelsLike(), 0.0);
+        assertEquals(4.1, london.getWind().getSpeed(), 0.0);
+        assertEquals(1_699_990_000L, london.getSys().getSunrise());
+        assertEquals(1_700_020_000L, london.getSys().getSunset());
+        assertEquals(10_000, london.getVisibility());
+        assertEquals(1_700_000_100L, london.getDatetime());
+        assertEquals(3600, london.getTimezone());
+        assertSame(london.getWeather().getMain(), paris.getWeather().getMain());
+        assertSame(london.getWeather().getDescription(), paris.getWeather().getDescription());
+    }
+
     @Test
     void putEvictsLeastRecentlyUsedWhenMaxSizeExceeded() {
         WeatherCache cache = new WeatherCache(2, 600_000L);
@@ -77,4 +132,80 @@ class WeatherCacheTest {
         assertTrue(snapshot.containsKey("city3"));
         assertFalse(snapshot.containsKey("city2"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void putReplacesExistingEntryWithoutGrowing() {
+        WeatherCache cache = new WeatherCache(2, 600_000L);
+        WeatherResponse first = new WeatherResponse();
+        first.setName("Old");
+        WeatherResponse second = new WeatherResponse();
+        second.setName("New");
+
+        cache.put("city", first);
+        cache.put("city", second);
+
+        assertEquals(1, cache.size());
+        assertEquals("New", cache.getIfFresh("city").getName());
+    }
+
+    @Test
+    void renewKeepsTheEntryAndMakesItFreshAgain() {
+        WeatherCache cache = new WeatherCache(2, 100L, 60_000L, NoopWeatherMetrics.INSTANCE);
+        WeatherCache.Entry entry = cache.put("city", response("London", "Clouds", "broken clouds"), 0L);
+        String json = entry.getJson();
+        assertNull(cache.peekEntry("city"));
+
+        assertTrue(cache.renew(entry, System.currentTimeMillis()));
+        assertSame(entry, cache.peekEntry("city"));
+        assertSame(json, entry.getJson());
+
+        cache.put("city", response("London", "Rain", "light rain"));
+        assertFalse(cache.renew(entry, System.currentTimeMillis()));
+    }
+
+    @Test
+    void concurrentReadsAndWritesRespectMaxSize() throws Exception {
+        WeatherCache cache = new WeatherCache(16, 600_000L);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(pool.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        String key = "city" + random.nextInt(64);
+                        if (cache.getIfFresh(key) == null) {
+                            cache.put(key, new WeatherResponse());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertTrue(cache.size() <= 16, "cache grew past max size: " + cache.size());
+    }
+
+    private static WeatherResponse response(String name, String main, String description) {
+        WeatherResponse response = new WeatherResponse();
+        response.setName(name);
+        response.setWeather(new WeatherInfo(main, description));
+        response.setTemperature(new TemperatureInfo(284.2, 283.1));
+        response.setWind(new WindInfo(4.1));
+        response.setSys(new SysInfo(1_699_990_000L, 1_700_020_000L));
+        response.setVisibility(10_000);
+        response.setDatetime(1_700_000_100L);
+        response.setTimezone(3600);
+        return response;
+    }
+}
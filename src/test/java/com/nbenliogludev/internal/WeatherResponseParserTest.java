@@ -0,0 +1,80 @@
+package com.nbenliogludev.internal;
+
+import com.google.gson.stream.MalformedJsonException;
+import com.nbenliogludev.StubWeatherServer;
+import com.nbenliogludev.model.WeatherResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class WeatherResponseParserTest {
+
+    private final WeatherResponseParser parser = new WeatherResponseParser();
+
+    @Test
+    void parsesOpenWeatherPayload() throws IOException {
+        WeatherResponse response = parser.parse(stream(StubWeatherServer.resource("london.json")));
+
+        assertEquals("London", response.getName());
+        assertEquals("Clouds", response.getWeather().getMain());
+        assertEquals("broken clouds", response.getWeather().getDescription());
+        assertEquals(284.2, response.getTemperature().getTemp(), 1e-9);
+        assertEquals(283.38, response.getTemperature().getFeelsLike(), 1e-9);
+        assertEquals(10000, response.getVisibility());
+        assertEquals(4.63, response.getWind().getSpeed(), 1e-9);
+        assertEquals(1729245600L, response.getDatetime());
+        assertEquals(1729233078L, response.getSys().getSunrise());
+        assertEquals(1729270734L, response.getSys().getSunset());
+        assertEquals(3600, response.getTimezone());
+        assertEquals(2643743L, response.getId());
+        assertEquals(51.5085, response.getCoord().getLat(), 1e-9);
+        assertEquals(-0.1257, response.getCoord().getLon(), 1e-9);
+    }
+
+    @Test
+    void missingAndNullFieldsFallBackToDefaults() throws IOException {
+        WeatherResponse response = parser.parse(stream(
+                "{\"weather\":[],\"main\":null,\"wind\":{\"speed\":null},\"name\":null,\"extra\":[1,{\"a\":2}]}"));
+
+        assertNull(response.getWeather());
+        assertNull(response.getName());
+        assertEquals(0.0, response.getTemperature().getTemp());
+        assertEquals(0.0, response.getWind().getSpeed());
+        assertEquals(0L, response.getSys().getSunrise());
+        assertEquals(0, response.getVisibility());
+        assertEquals(0L, response.getId());
+        assertNull(response.getCoord());
+    }
+
+    @Test
+    void parsesGroupPayloadIntoOneResponsePerCity() throws IOException {
+        List<WeatherResponse> responses = parser.parseGroup(stream("{\"cnt\":2,\"list\":["
+                + StubWeatherServer.resource("london.json").trim() + ","
+                + StubWeatherServer.resource("paris.json").trim() + "]}"));
+
+        assertEquals(2, responses.size());
+        assertEquals(2643743L, responses.get(0).getId());
+        assertEquals("London", responses.get(0).getName());
+        assertEquals(2988507L, responses.get(1).getId());
+        assertEquals("Paris", responses.get(1).getName());
+        assertTrue(parser.parseGroup(stream("{\"cnt\":0,\"list\":[]}")).isEmpty());
+    }
+
+    @Test
+    void malformedPayloadFails() {
+        assertThrows(MalformedJsonException.class, () -> parser.parse(stream("{\"name\":\"London\" \"dt\"")));
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,71 @@
+package com.nbenliogludev.metrics;
+
+import com.nbenliogludev.StubWeatherServer;
+import com.nbenliogludev.WeatherClient;
+import com.nbenliogludev.WeatherClients;
+import com.nbenliogludev.exception.WeatherNotFoundException;
+import com.nbenliogludev.exception.WeatherSdkException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author nbenliogludev
+ */
+class MicrometerWeatherMetricsTest {
+
+    private static final String API_KEY = "metrics-key";
+
+    private StubWeatherServer server;
+    private SimpleMeterRegistry registry;
+    private WeatherClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new StubWeatherServer().respondWithResource("London", "london.json");
+        registry = new SimpleMeterRegistry();
+        client = WeatherClients.builder(API_KEY)
+                .baseUrl(server.baseUrl())
+                .cacheCapacity(1)
+                .metrics(new MicrometerWeatherMetrics(registry))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        WeatherClients.destroy(API_KEY);
+        server.close();
+    }
+
+    @Test
+    void recordsCacheAndUpstreamActivity() throws WeatherSdkException {
+        client.getCurrentWeather("London");
+        client.getCurrentWeather("London");
+        assertThrows(WeatherNotFoundException.class, () -> client.getCurrentWeather("Atlantis"));
+
+        assertEquals(1.0, registry.get("weather.cache.requests").tag("result", "hit").counter().count());
+        assertEquals(2.0, registry.get("weather.cache.requests").tag("result", "miss").counter().count());
+        assertEquals(1L, registry.get("weather.upstream.requests").tag("status", "200").timer().count());
+        assertEquals(1L, registry.get("weather.upstream.requests").tag("status", "404").timer().count());
+
+        assertEquals(1L, registry.get("weather.response.parse").timer().count());
+        double payload = registry.get("weather.response.payload").summary().totalAmount();
+        assertEquals(StubWeatherServer.resource("london.json").getBytes(StandardCharsets.UTF_8).length, payload, 0.0);
+    }
+
+    @Test
+    void recordsEvictions() throws WeatherSdkException {
+        server.respondWithResource("Paris", "paris.json");
+
+        client.getCurrentWeather("London");
+        client.getCurrentWeather("Paris");
+
+        assertEquals(1.0, registry.get("weather.cache.removals").tag("cause", "eviction").counter().count());
+        assertEquals(0.0, registry.get("weather.cache.removals").tag("cause", "expiry").counter().count());
+    }
+}